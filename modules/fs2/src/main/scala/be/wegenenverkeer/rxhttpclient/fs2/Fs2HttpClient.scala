@@ -8,7 +8,6 @@ import be.wegenenverkeer.rxhttpclient.rxjava.RxJavaHttpClient
 import cats.effect.{Async, ConcurrentEffect}
 import fs2.Stream
 import fs2.interop.reactivestreams.fromPublisher
-import org.asynchttpclient.Response
 
 import scala.util.Try
 
@@ -33,13 +32,13 @@ case class Fs2HttpClient(client: RxJavaHttpClient) extends Fs2HttpApi {
     stream[F, Array[Byte]](req, identity)
 
   def execute[F[_] : Async, A](req: ClientRequest, tr: ServerResponse => A): F[A] = {
-    def attemptTransform(resp: Response): Either[Throwable, A] =
+    def attemptTransform(resp: ServerResponse): Either[Throwable, A] =
       Try {
-        tr(ServerResponse.wrap(resp))
+        tr(resp)
       }.toEither
 
     Async[F].async { cb =>
-      client.inner().executeRequest(req.unwrap()).toCompletableFuture
+      client.execute[ServerResponse](req, (r: ServerResponse) => r)
         .whenComplete((a, t) =>
           if (t == null) cb(attemptTransform(a)) else cb(Left(t)))
     }
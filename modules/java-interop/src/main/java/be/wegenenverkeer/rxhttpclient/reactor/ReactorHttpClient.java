@@ -10,7 +10,9 @@ import reactor.core.publisher.Mono;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Created by Karel Maesen, Geovise BVBA on 18/04/2020.
@@ -27,9 +29,64 @@ public class ReactorHttpClient implements RxHttpClient {
         return delegate.execute(request, transformer);
     }
 
+    @Override
+    public <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer, Executor executor) {
+        return delegate.execute(request, transformer, executor);
+    }
+
     @Override
     public <F> Mono<F> executeToCompletion(ClientRequest request, Function<ServerResponse, F> transformer) {
-        return Mono.fromFuture(delegate.execute(request, transformer));
+        return fromFuture(() -> delegate.execute(request, transformer));
+    }
+
+    /**
+     * Executes a request and reads the response body as a JSON value of the specified type.
+     * <p>
+     * The body is parsed directly from the response bytes with the client's {@code ObjectMapper}.
+     * </p>
+     *
+     * @param request the request to send
+     * @param type    the type of the value
+     * @param <T>     the type of the value
+     * @return a CompletableFuture for the value
+     * @see JsonResponseReader
+     */
+    public <T> CompletableFuture<T> execute(ClientRequest request, Class<T> type) {
+        return delegate.execute(request, type);
+    }
+
+    /**
+     * Executes a request and returns a Mono for the response body, read as a JSON value of the specified type.
+     *
+     * @param request the request to send
+     * @param type    the type of the value
+     * @param <T>     the type of the value
+     * @return a Mono that returns the value
+     * @see JsonResponseReader
+     */
+    public <T> Mono<T> executeToCompletion(ClientRequest request, Class<T> type) {
+        return fromFuture(() -> delegate.execute(request, type));
+    }
+
+    /**
+     * Returns the reader for JSON response bodies, which uses the client's {@code ObjectMapper}.
+     *
+     * @return the reader for JSON response bodies
+     * @see BaseRxHttpClient#getJsonResponseReader()
+     */
+    public JsonResponseReader getJsonResponseReader() {
+        return delegate.getJsonResponseReader();
+    }
+
+    /**
+     * Returns a Mono that executes a request for each subscription, and cancels the request when the subscription is
+     * cancelled (see {@link be.wegenenverkeer.rxhttpclient.Builder#setCancellationPolicy(CancellationPolicy)}).
+     */
+    private static <F> Mono<F> fromFuture(Supplier<CompletableFuture<F>> execute) {
+        return Mono.defer(() -> {
+            CompletableFuture<F> future = execute.get();
+            return Mono.fromFuture(future).doOnCancel(() -> future.cancel(false));
+        });
     }
 
     @Override
@@ -92,6 +149,11 @@ public class ReactorHttpClient implements RxHttpClient {
         return delegate.getMaxConnections();
     }
 
+    @Override
+    public CancellationStats getCancellationStats() {
+        return delegate.getCancellationStats();
+    }
+
     public static class Builder extends be.wegenenverkeer.rxhttpclient.Builder<ReactorHttpClient, ReactorHttpClient.Builder> {
 
         @Override
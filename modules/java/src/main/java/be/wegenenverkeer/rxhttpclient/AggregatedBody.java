@@ -0,0 +1,183 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The complete body of a response, as aggregated by an {@link AggregatingResponseHandler}.
+ */
+interface AggregatedBody extends AutoCloseable {
+
+    long length();
+
+    byte[] getBytes();
+
+    ByteBuffer getByteBuffer();
+
+    InputStream getInputStream();
+
+    default String getString(Charset charset) {
+        return new String(getBytes(), charset);
+    }
+
+    /**
+     * Releases the resources that hold the body, after which it can no longer be read.
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * A body that is held in a heap or direct buffer.
+     */
+    final class InMemory implements AggregatedBody {
+
+        final private ByteBuffer buffer;
+
+        InMemory(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long length() {
+            return buffer.remaining();
+        }
+
+        /**
+         * Returns the backing array of a heap buffer that holds exactly the body, or otherwise a copy.
+         */
+        @Override
+        public byte[] getBytes() {
+            if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.array().length == buffer.limit()) {
+                return buffer.array();
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            return buffer.duplicate();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            if (buffer.hasArray()) {
+                return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            ByteBuffer source = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return source.hasRemaining() ? source.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!source.hasRemaining()) {
+                        return -1;
+                    }
+                    int n = Math.min(len, source.remaining());
+                    source.get(b, off, n);
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return source.remaining();
+                }
+            };
+        }
+
+        @Override
+        public String getString(Charset charset) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), charset);
+            }
+            return charset.decode(buffer.duplicate()).toString();
+        }
+    }
+
+    /**
+     * A body that is spilled to a temporary file.
+     * <p>
+     * No file handle is kept open between reads: each read opens the file again, and the {@code InputStream}s that are
+     * handed out hold their own handle until they are closed. The file is deleted when the body is closed, or otherwise
+     * when the body is garbage collected.
+     */
+    final class Spilled implements AggregatedBody {
+
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        final private Path file;
+        final private long length;
+        final private Cleaner.Cleanable cleanable;
+
+        Spilled(Path file, long length) {
+            this.file = file;
+            this.length = length;
+            this.cleanable = CLEANER.register(this, () -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    //nothing left to do
+                }
+            });
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            ByteBuffer buffer = getByteBuffer();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * Returns a read-only, memory-mapped view of the file. The mapping remains valid after the file is closed.
+         */
+        @Override
+        public ByteBuffer getByteBuffer() {
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Response body of " + length + " bytes is too large for a single buffer; use the InputStream");
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            try {
+                return Files.newInputStream(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Deletes the file. Idempotent.
+         */
+        @Override
+        public void close() {
+            cleanable.clean();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+
+import java.nio.file.Path;
+
+/**
+ * An {@code AsyncHandler} that aggregates the complete response into a {@code ServerResponse}, while limiting the
+ * memory used by the body.
+ * <p>
+ * The body parts are copied into a single buffer as they arrive. When the response has a {@code Content-Length} header,
+ * the buffer is allocated with that length, so the body is copied only once (see {@link ResponseAggregation}).
+ * <p>
+ * The first {@code maxInMemorySize} bytes of the body are kept in memory; when the body grows larger, it is moved to a
+ * temporary file. The {@code ServerResponse} then reads the body from that file. The temporary file is removed when
+ * the {@code ServerResponse} is closed or garbage collected, or when the request fails.
+ * <p>
+ * When the body exceeds {@code maxSize} bytes, the request is aborted with a {@link ResponseTooLargeException}. If the
+ * response has a {@code Content-Length} header, this happens before any of the body is received.
+ * <p>
+ * The progress of the response is tracked, so that the request can be cancelled (see {@link ResponseCancellation}).
+ * A response that is drained after cancellation is discarded, and completes with null.
+ */
+public class AggregatingResponseHandler implements AsyncHandler<ServerResponse> {
+
+    final private Response.ResponseBuilder builder = new Response.ResponseBuilder();
+    final private BodyAggregator body;
+    final private ResponseCancellation cancellation;
+
+    /**
+     * @param maxInMemorySize the number of bytes that are kept in memory, or a negative number for no limit
+     * @param maxSize         the maximum size of the body, or a negative number for no limit
+     * @param spillDirectory  the directory for temporary files, or null for the default temporary-file directory
+     */
+    public AggregatingResponseHandler(long maxInMemorySize, long maxSize, Path spillDirectory) {
+        this(maxInMemorySize, maxSize, spillDirectory, false);
+    }
+
+    /**
+     * @param maxInMemorySize the number of bytes that are kept in memory, or a negative number for no limit
+     * @param maxSize         the maximum size of the body, or a negative number for no limit
+     * @param spillDirectory  the directory for temporary files, or null for the default temporary-file directory
+     * @param direct          true if the body is kept in a direct buffer, rather than a heap buffer
+     */
+    public AggregatingResponseHandler(long maxInMemorySize, long maxSize, Path spillDirectory, boolean direct) {
+        this(maxInMemorySize, maxSize, spillDirectory, direct, new CancellationStats());
+    }
+
+    private AggregatingResponseHandler(long maxInMemorySize, long maxSize, Path spillDirectory, boolean direct, CancellationStats stats) {
+        this.body = new BodyAggregator(maxInMemorySize, maxSize, spillDirectory, direct);
+        this.cancellation = new ResponseCancellation(stats);
+    }
+
+    public AggregatingResponseHandler(RestClientConfig config) {
+        this(config.getMaxInMemoryResponseSize(), config.getMaxResponseSize(), config.getResponseSpillDirectory(),
+                config.getResponseAggregation() == ResponseAggregation.DIRECT, config.getCancellationStats());
+    }
+
+    public ResponseCancellation getCancellation() {
+        return cancellation;
+    }
+
+    @Override
+    public State onStatusReceived(HttpResponseStatus responseStatus) {
+        builder.accumulate(responseStatus);
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpHeaders headers) {
+        builder.accumulate(headers);
+        cancellation.onHeaders(headers);
+        String contentLength = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                body.expect(Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                //an invalid Content-Length is checked against the body that is actually received
+            }
+        }
+        return State.CONTINUE;
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        cancellation.onBodyPart(bodyPart);
+        if (cancellation.isDraining()) {
+            body.discard();
+            return State.CONTINUE;
+        }
+        body.append(bodyPart.getBodyByteBuffer());
+        return State.CONTINUE;
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        cancellation.onThrowable();
+        body.discard();
+    }
+
+    @Override
+    public ServerResponse onCompleted() throws Exception {
+        cancellation.onCompleted();
+        if (cancellation.isDraining()) {
+            body.discard();
+            return null;
+        }
+        return new ServerResponse(builder.build(), body.finish());
+    }
+}
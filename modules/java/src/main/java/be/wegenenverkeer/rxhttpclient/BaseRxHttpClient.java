@@ -1,6 +1,8 @@
 package be.wegenenverkeer.rxhttpclient;
 
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Response;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,13 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -25,26 +34,131 @@ public abstract class BaseRxHttpClient implements RxHttpClient {
     final private List<RequestSigner> requestSigners;
     final private ClientRequestLogFormatter logFormatter;
 
+    final private Executor transformerExecutor;
+    //the pool that this client created for the transformers, or null if the executor is configured
+    final private ExecutorService ownTransformerPool;
+
     protected BaseRxHttpClient(AsyncHttpClient innerClient, RestClientConfig config, ClientRequestLogFormatter logFmt, RequestSigner... requestSigners) {
         this.innerClient = innerClient;
         this.config = config;
         this.requestSigners = List.of(requestSigners);
         this.logFormatter = logFmt;
+        if (config.getTransformerExecutor() != null) {
+            this.ownTransformerPool = null;
+            this.transformerExecutor = config.getTransformerExecutor();
+        } else {
+            this.ownTransformerPool = newTransformerPool(config.getTransformerThreads());
+            this.transformerExecutor = ownTransformerPool;
+        }
+    }
+
+    private static ExecutorService newTransformerPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "rxhttpclient-transformer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Returns the executor that runs the response transformers, unless another one is specified per request.
+     *
+     * @return the executor for response transformers
+     * @see Builder#setTransformerExecutor(Executor)
+     */
+    protected Executor getTransformerExecutor() {
+        return transformerExecutor;
     }
 
     /**
      * * Executes a request and returns an Observable for the complete response.
+     * <p>
+     * The transformer runs on the transformer executor of this client (see {@link Builder#setTransformerExecutor(Executor)}).
      */
     @Override
     public <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer) {
+        return execute(request, transformer, transformerExecutor);
+    }
+
+    /**
+     * Executes a request and returns a CompletableFuture for the transformed response. The transformer runs on the
+     * specified executor. The response is closed once it is transformed, unless the transformer returns it.
+     */
+    @Override
+    public <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer, Executor executor) {
         logger.info("Sending Request: " + toLogMessage(request));
         //Note: we don't use Observable.toBlocking().toFuture()
         //because we need a CompletableFuture so that interop with Scala is possible
-        final CompletableFuture<F> future = new CompletableFuture<>();
-
-        return innerClient.executeRequest(request.unwrap()).toCompletableFuture()
+        if (config.isAggregatingResponses()) {
+            AggregatingResponseHandler handler = new AggregatingResponseHandler(config);
+            ListenableFuture<ServerResponse> response = innerClient.executeRequest(request.unwrap(), handler);
+            return cancelling(response.toCompletableFuture()
+                    .thenApplyAsync( r -> transformAndClose(transformer, r), executor ), response, handler.getCancellation());
+        }
+        ResponseCompletionHandler handler = new ResponseCompletionHandler(config.getCancellationStats());
+        ListenableFuture<Response> response = innerClient.executeRequest(request.unwrap(), handler);
+        return cancelling(response.toCompletableFuture()
                 .thenApply( ServerResponse::wrap )
-                .thenApply( transformer );
+                .thenApplyAsync( transformer, executor ), response, handler.getCancellation());
+    }
+
+    /**
+     * Applies the transformer, and closes the response afterwards, unless the transformer returns the response itself.
+     */
+    private static <F> F transformAndClose(Function<ServerResponse, F> transformer, ServerResponse response) {
+        F value = null;
+        try {
+            value = transformer.apply(response);
+            return value;
+        } finally {
+            if (response != null && value != response) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Cancels the request when the returned future completes before the response, which is the case when the future is
+     * cancelled or completed by the caller (e.g. with {@code orTimeout}).
+     */
+    private <F> CompletableFuture<F> cancelling(CompletableFuture<F> result, ListenableFuture<?> response, ResponseCancellation cancellation) {
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                cancellation.cancel(response, config.getCancellationPolicy());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executes a request and reads the response body as a JSON value of the specified type.
+     * <p>
+     * The body is parsed directly from the response bytes with the client's {@code ObjectMapper}.
+     * </p>
+     *
+     * @param request the request to send
+     * @param type    the type of the value
+     * @param <T>     the type of the value
+     * @return a CompletableFuture for the value
+     * @see JsonResponseReader
+     */
+    public <T> CompletableFuture<T> execute(ClientRequest request, Class<T> type) {
+        return execute(request, config.getJsonResponseReader().forType(type));
+    }
+
+    /**
+     * Returns the reader for JSON response bodies, which uses the client's {@code ObjectMapper}. Use it to read
+     * values of a generic type, e.g. {@code execute(request, client.getJsonResponseReader().forType(new TypeReference<List<Contact>>() {}))}.
+     *
+     * @return the reader for JSON response bodies
+     * @see Builder#setObjectMapper(com.fasterxml.jackson.databind.ObjectMapper)
+     */
+    public JsonResponseReader getJsonResponseReader() {
+        return config.getJsonResponseReader();
     }
 
     /**
@@ -94,7 +208,8 @@ public abstract class BaseRxHttpClient implements RxHttpClient {
     }
 
     /**
-     * Closes the underlying connection
+     * Closes the underlying connection, and shuts down the transformer pool of this client. Transformers that are
+     * already submitted still run.
      */
     @Override
     public void close() {
@@ -102,6 +217,10 @@ public abstract class BaseRxHttpClient implements RxHttpClient {
             this.innerClient.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (ownTransformerPool != null) {
+                ownTransformerPool.shutdown();
+            }
         }
     }
 
@@ -121,6 +240,20 @@ public abstract class BaseRxHttpClient implements RxHttpClient {
     }
 
 
+    /**
+     * Returns the counts of the outcomes of cancelled requests (see {@link Builder#setCancellationPolicy(CancellationPolicy)}).
+     *
+     * @return the cancellation statistics of this client
+     */
+    @Override
+    public CancellationStats getCancellationStats() {
+        return config.getCancellationStats();
+    }
+
+    protected RestClientConfig getConfig() {
+        return this.config;
+    }
+
     @Override
     public AsyncHttpClient inner() {
         return this.innerClient;
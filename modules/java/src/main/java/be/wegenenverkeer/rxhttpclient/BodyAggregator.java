@@ -0,0 +1,146 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Collects the body parts of a response in a single buffer, and moves them to a temporary file once the body exceeds
+ * the in-memory threshold.
+ * <p>
+ * When the length of the body is announced, the buffer is allocated with that length (up to {@code MAX_PRESIZE}), so
+ * that the body parts are copied exactly once. Otherwise the buffer grows by doubling, and is trimmed when the body is
+ * complete. A body that is announced to exceed the in-memory threshold is written to the temporary file from the start.
+ * <p>
+ * Not thread-safe; the body parts of a response are received one after the other.
+ */
+final class BodyAggregator {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    //an announced length is trusted up to this size; larger bodies grow the buffer as they arrive
+    private static final int MAX_PRESIZE = 64 * 1024 * 1024;
+    //some VMs reserve header words in an array
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    final private long maxInMemorySize;
+    final private long maxSize;
+    final private Path spillDirectory;
+    final private boolean direct;
+
+    private ByteBuffer buffer = EMPTY;
+    private long expectedLength = -1;
+    private long size = 0;
+    private Path spillFile;
+    private FileChannel spill;
+
+    /**
+     * @param maxInMemorySize the number of bytes that are kept in memory, or a negative number for no limit
+     * @param maxSize         the maximum size of the body, or a negative number for no limit
+     * @param spillDirectory  the directory for temporary files, or null for the default temporary-file directory
+     * @param direct          true if the body is kept in a direct buffer, rather than a heap buffer
+     */
+    BodyAggregator(long maxInMemorySize, long maxSize, Path spillDirectory, boolean direct) {
+        this.maxInMemorySize = maxInMemorySize;
+        this.maxSize = maxSize;
+        this.spillDirectory = spillDirectory;
+        this.direct = direct;
+    }
+
+    /**
+     * Checks the announced length of the body against the maximum size, and sizes the buffer for it.
+     *
+     * @param contentLength the value of the {@code Content-Length} header
+     * @throws ResponseTooLargeException if the body will exceed the maximum size
+     */
+    void expect(long contentLength) {
+        if (maxSize >= 0 && contentLength > maxSize) {
+            throw new ResponseTooLargeException(contentLength, maxSize);
+        }
+        expectedLength = contentLength;
+        if (size == 0 && !exceedsMemory(contentLength) && contentLength > buffer.capacity()) {
+            buffer = allocate((int) Math.min(contentLength, MAX_PRESIZE));
+        }
+    }
+
+    void append(ByteBuffer bytes) throws IOException {
+        int n = bytes.remaining();
+        long newSize = size + n;
+        if (maxSize >= 0 && newSize > maxSize) {
+            throw new ResponseTooLargeException(newSize, maxSize);
+        }
+        if (spill == null && (exceedsMemory(newSize) || exceedsMemory(expectedLength))) {
+            startSpilling();
+        }
+        if (spill != null) {
+            while (bytes.hasRemaining()) {
+                spill.write(bytes);
+            }
+        } else {
+            ensureCapacity((int) newSize);
+            buffer.put(bytes);
+        }
+        size = newSize;
+    }
+
+    AggregatedBody finish() throws IOException {
+        if (spill != null) {
+            spill.close();
+            return new AggregatedBody.Spilled(spillFile, size);
+        }
+        buffer.flip();
+        if (buffer.capacity() != size) {
+            //the announced length was wrong, or unknown
+            buffer = allocate((int) size).put(buffer).flip();
+        }
+        return new AggregatedBody.InMemory(buffer);
+    }
+
+    /**
+     * Releases the buffer and deletes the temporary file, if any.
+     */
+    void discard() {
+        buffer = EMPTY;
+        if (spill != null) {
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                //nothing left to do
+            }
+        }
+    }
+
+    private boolean exceedsMemory(long length) {
+        return (maxInMemorySize >= 0 && length > maxInMemorySize) || length > MAX_ARRAY_SIZE;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed > buffer.capacity()) {
+            long grown = Math.max(INITIAL_CAPACITY, 2L * buffer.capacity());
+            if (maxInMemorySize >= 0) {
+                grown = Math.min(grown, maxInMemorySize);
+            }
+            buffer = allocate((int) Math.min(MAX_ARRAY_SIZE, Math.max(needed, grown))).put(buffer.flip());
+        }
+    }
+
+    private void startSpilling() throws IOException {
+        spillFile = spillDirectory == null
+                ? Files.createTempFile("rxhttpclient-", ".body")
+                : Files.createTempFile(spillDirectory, "rxhttpclient-", ".body");
+        spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            spill.write(buffer);
+        }
+        buffer = EMPTY;
+    }
+}
@@ -5,8 +5,10 @@ package be.wegenenverkeer.rxhttpclient;
  */
 
 import be.wegenenverkeer.rxhttpclient.aws.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.handler.ssl.SslContext;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
 import org.asynchttpclient.filter.RequestFilter;
 import org.asynchttpclient.filter.ThrottleRequestFilter;
@@ -15,9 +17,11 @@ import org.slf4j.LoggerFactory;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 
 import static org.asynchttpclient.Dsl.asyncHttpClient;
@@ -190,6 +194,176 @@ public abstract class Builder<T, U extends Builder<T,U>> {
         return (U)this;
     }
 
+    /**
+     * Sets the maximum number of response body parts that are buffered for a streaming response
+     * (see {@code executeObservably}) before reading from the connection is paused.
+     * <p>
+     * <p>Reading resumes when the subscriber has consumed half of the buffered body parts. Default is 1024.</p>
+     *
+     * @param streamBufferSize the maximum number of buffered body parts per streaming response
+     * @return a {@link Builder}
+     */
+    public U setStreamBufferSize(int streamBufferSize) {
+        if (streamBufferSize < 1) {
+            throw new IllegalArgumentException("Stream buffer size must be strictly positive");
+        }
+        rcConfig.setStreamBufferSize(streamBufferSize);
+        return (U)this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of a response body that are kept in memory by the execute methods that return a
+     * complete {@link ServerResponse}. The rest of a larger body is written to a temporary file, from which
+     * {@link ServerResponse#getResponseBodyAsStream()} and {@link ServerResponse#getResponseBodyAsByteBuffer()} read it.
+     * <p>
+     * <p>The execute methods that take a transformer close the response once it is transformed, which removes the
+     * temporary file, unless the transformer returns the response itself. A caller that holds on to a
+     * {@code ServerResponse} (including the one of an {@link HttpError}) owns it, and should {@link ServerResponse#close()}
+     * it; otherwise the temporary file is only removed when the response is garbage collected. Default is -1 (no limit,
+     * the whole body is kept in memory). Streaming responses are not affected.</p>
+     *
+     * @param maxInMemorySize the maximum number of bytes in memory per response, or -1 for no limit
+     * @return a {@link Builder}
+     */
+    public U setMaxInMemoryResponseSize(long maxInMemorySize) {
+        rcConfig.setMaxInMemoryResponseSize(maxInMemorySize);
+        return (U)this;
+    }
+
+    /**
+     * Sets the maximum size of a response body for the execute methods that return a complete {@link ServerResponse}.
+     * <p>
+     * <p>Requests for larger bodies fail with a {@link ResponseTooLargeException}. When the response has a
+     * {@code Content-Length} header, the request is aborted as soon as the headers are received. Default is -1 (no
+     * limit). Streaming responses are not affected.</p>
+     *
+     * @param maxSize the maximum size of a response body, or -1 for no limit
+     * @return a {@link Builder}
+     */
+    public U setMaxResponseSize(long maxSize) {
+        rcConfig.setMaxResponseSize(maxSize);
+        return (U)this;
+    }
+
+    /**
+     * Sets the directory for the temporary files of response bodies that exceed the maximum in-memory size. Default is
+     * the default temporary-file directory.
+     *
+     * @param directory the directory for temporary files
+     * @return a {@link Builder}
+     * @see #setMaxInMemoryResponseSize(long)
+     */
+    public U setResponseSpillDirectory(Path directory) {
+        rcConfig.setResponseSpillDirectory(directory);
+        return (U)this;
+    }
+
+    /**
+     * Sets how the execute methods that return a complete {@link ServerResponse} collect the response body. Default is
+     * {@link ResponseAggregation#PARTS}.
+     * <p>
+     * <p>With {@link ResponseAggregation#HEAP} or {@link ResponseAggregation#DIRECT} the body is copied into a single
+     * buffer, which is allocated up front when the response has a {@code Content-Length} header. This avoids the
+     * concatenation of the body parts each time the body is read. When a maximum (in-memory) response size is set,
+     * the body is always collected in a single buffer.</p>
+     *
+     * @param aggregation the aggregation mode
+     * @return a {@link Builder}
+     */
+    public U setResponseAggregation(ResponseAggregation aggregation) {
+        rcConfig.setResponseAggregation(aggregation);
+        return (U)this;
+    }
+
+    /**
+     * Sets the executor that runs the transformers of the execute methods that return a complete response (the
+     * {@code Function<ServerResponse, F>}s, including the readers of typed JSON responses). By default, the client
+     * runs them on a pool of its own daemon threads (see {@link #setTransformerThreads(int)}), that is shut down when
+     * the client is closed. An executor that is set here is not shut down by the client.
+     * <p>
+     * <p>Transformers are not run on the I/O threads that receive the responses, so that deserializing a large response
+     * doesn't delay the other connections of that I/O thread. To run transformers on the I/O threads anyway (e.g. for
+     * trivial transformers), set {@code Runnable::run}. The executor can also be specified per request.</p>
+     *
+     * @param executor the executor for response transformers
+     * @return a {@link Builder}
+     */
+    public U setTransformerExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Transformer executor can't be null");
+        }
+        rcConfig.setTransformerExecutor(executor);
+        return (U)this;
+    }
+
+    /**
+     * Sets the number of threads of the pool that runs the response transformers, unless another executor is set with
+     * {@link #setTransformerExecutor(Executor)}. Default is the number of available processors. Idle threads are
+     * stopped after a minute.
+     *
+     * @param threads the maximum number of transformer threads
+     * @return a {@link Builder}
+     */
+    public U setTransformerThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of transformer threads must be strictly positive");
+        }
+        rcConfig.setTransformerThreads(threads);
+        return (U)this;
+    }
+
+    /**
+     * Sets what happens to the connection when a request is cancelled before its response is complete: it is closed,
+     * or drained so that it can be reused. Default is {@link CancellationPolicy#ABORT}.
+     * <p>
+     * <p>Requests are cancelled when the {@code CompletableFuture} returned by {@code execute} is cancelled or
+     * completed otherwise (e.g. by {@code orTimeout}), or when the subscription to {@code executeToCompletion} is
+     * cancelled.</p>
+     *
+     * @param policy the cancellation policy
+     * @return a {@link Builder}
+     */
+    public U setCancellationPolicy(CancellationPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Cancellation policy can't be null");
+        }
+        rcConfig.setCancellationPolicy(policy);
+        return (U)this;
+    }
+
+    /**
+     * Sets the {@code ObjectMapper} for the execute methods that read the response body as a JSON value of a given
+     * type. Default is an {@code ObjectMapper} with default settings.
+     * <p>
+     * <p>The mapper must not be reconfigured after the client is built, since the {@code ObjectReader}s derived from
+     * it are cached.</p>
+     *
+     * @param mapper the {@code ObjectMapper} for JSON responses
+     * @return a {@link Builder}
+     */
+    public U setObjectMapper(ObjectMapper mapper) {
+        rcConfig.setJsonResponseReader(new JsonResponseReader(mapper));
+        return (U)this;
+    }
+
+    /**
+     * Set true to have response body parts keep a reference to the Netty buffer in which they were received, rather
+     * than copying them to a byte array. Default is false.
+     * <p>
+     * <p>This is required for zero-copy streaming with {@code RxJavaHttpClient.executeObservablyRetained()}. Other
+     * execute methods copy the body parts as before. Code that uses the {@link AsyncHttpClient} returned by
+     * {@code inner()} directly must not hold on to lazy body parts after the callback in which they are received.</p>
+     *
+     * @param lazy true if body parts are lazy
+     * @return a {@link Builder}
+     */
+    public U setLazyResponseBodyParts(boolean lazy) {
+        configBuilder.setResponseBodyPartFactory(lazy
+                ? AsyncHttpClientConfig.ResponseBodyPartFactory.LAZY
+                : AsyncHttpClientConfig.ResponseBodyPartFactory.EAGER);
+        return (U)this;
+    }
+
     /**
      * Set true if connection can be pooled by a ChannelPool. Default is true.
      *
@@ -0,0 +1,75 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what happens to the connection of a request that is cancelled before its response is complete.
+ * <p>
+ * The connection is either closed immediately (aborting the request), or drained: the rest of the response is read
+ * and discarded, after which the connection returns to the pool and can be reused for the next request (saving a new
+ * connection and TLS handshake). Draining is only worthwhile when little of the response remains.
+ * <p>
+ * The remaining size is known from the {@code Content-Length} header; the remaining time is estimated from the rate at
+ * which the response was received so far. A response of unknown length is never drained, except with {@link #DRAIN}.
+ *
+ * @see Builder#setCancellationPolicy(CancellationPolicy)
+ */
+public final class CancellationPolicy {
+
+    /**
+     * Always closes the connection. This is the default.
+     */
+    public static final CancellationPolicy ABORT = new CancellationPolicy(-1, -1);
+
+    /**
+     * Always drains the connection, whatever remains of the response.
+     */
+    public static final CancellationPolicy DRAIN = new CancellationPolicy(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    final private long maxRemainingBytes;
+    final private long maxRemainingMillis;
+
+    private CancellationPolicy(long maxRemainingBytes, long maxRemainingMillis) {
+        this.maxRemainingBytes = maxRemainingBytes;
+        this.maxRemainingMillis = maxRemainingMillis;
+    }
+
+    /**
+     * Returns a policy that drains the connection when fewer than the specified number of bytes remain, or when the
+     * rest of the response is expected within the specified time. Otherwise the connection is closed.
+     *
+     * @param maxRemainingBytes the maximum number of remaining bytes that are drained
+     * @param maxRemainingTime  the maximum expected time to drain the remaining bytes
+     * @param unit              the time unit of {@code maxRemainingTime}
+     * @return a {@code CancellationPolicy}
+     */
+    public static CancellationPolicy drainBelow(long maxRemainingBytes, long maxRemainingTime, TimeUnit unit) {
+        if (maxRemainingBytes < 0 || maxRemainingTime < 0) {
+            throw new IllegalArgumentException("Drain thresholds can't be negative");
+        }
+        return new CancellationPolicy(maxRemainingBytes, unit.toMillis(maxRemainingTime));
+    }
+
+    /**
+     * Returns true if the connection must be drained.
+     *
+     * @param remainingBytes  the number of bytes of the response that remain, or -1 if unknown
+     * @param remainingMillis the estimated time to receive the remaining bytes, or -1 if unknown
+     * @return true to drain the connection, false to close it
+     */
+    public boolean shouldDrain(long remainingBytes, long remainingMillis) {
+        if (maxRemainingBytes == Long.MAX_VALUE) {
+            return true;
+        }
+        if (remainingBytes < 0) {
+            return false;
+        }
+        return remainingBytes <= maxRemainingBytes || (remainingMillis >= 0 && remainingMillis <= maxRemainingMillis);
+    }
+
+    @Override
+    public String toString() {
+        return this == ABORT ? "ABORT" : this == DRAIN ? "DRAIN"
+                : "drainBelow(" + maxRemainingBytes + " bytes, " + maxRemainingMillis + " ms)";
+    }
+}
@@ -0,0 +1,66 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the outcomes of cancelled requests of a client, as decided by its {@link CancellationPolicy}.
+ * <p>
+ * A cancelled request is either aborted, which closes its connection, or drained. A drain either completes, after which
+ * the connection returns to the pool, or fails (e.g. on a timeout), which closes the connection after all.
+ *
+ * @see BaseRxHttpClient#getCancellationStats()
+ */
+public class CancellationStats {
+
+    final private LongAdder aborted = new LongAdder();
+    final private LongAdder drained = new LongAdder();
+    final private LongAdder drainFailed = new LongAdder();
+    final private LongAdder drainedBytes = new LongAdder();
+
+    void recordAborted() {
+        aborted.increment();
+    }
+
+    void recordDrained(long bytes) {
+        drained.increment();
+        drainedBytes.add(bytes);
+    }
+
+    void recordDrainFailed() {
+        drainFailed.increment();
+    }
+
+    /**
+     * Returns the number of cancelled requests whose connection was closed.
+     */
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    /**
+     * Returns the number of cancelled requests whose connection was drained, and returned to the pool.
+     */
+    public long getDrained() {
+        return drained.sum();
+    }
+
+    /**
+     * Returns the number of cancelled requests whose connection failed while it was drained.
+     */
+    public long getDrainFailed() {
+        return drainFailed.sum();
+    }
+
+    /**
+     * Returns the total number of bytes that were discarded while draining connections.
+     */
+    public long getDrainedBytes() {
+        return drainedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CancellationStats[aborted=%d, drained=%d, drainFailed=%d, drainedBytes=%d]",
+                getAborted(), getDrained(), getDrainFailed(), getDrainedBytes());
+    }
+}
@@ -3,6 +3,7 @@ package be.wegenenverkeer.rxhttpclient;
 import io.netty.handler.codec.http.HttpHeaders;
 import org.asynchttpclient.Param;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
 
 import java.io.File;
 import java.io.InputStream;
@@ -113,6 +114,18 @@ public class ClientRequest {
         return this.request.toString();
     }
 
+    /**
+     * Returns a copy of this request in which the specified header is set to the specified value, replacing any
+     * existing values. This request is left unchanged.
+     *
+     * @param header the header name
+     * @param value  the header value
+     * @return a copy of this request with the header set
+     */
+    public ClientRequest withHeader(String header, String value) {
+        return new ClientRequest(new RequestBuilder(this.request).setHeader(header, value).build());
+    }
+
     //provided to inject headers after request is built
     public void addHeader(String header, String value) {
         List<String> hv = new ArrayList<>();
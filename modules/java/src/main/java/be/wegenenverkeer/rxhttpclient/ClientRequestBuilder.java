@@ -2,10 +2,15 @@ package be.wegenenverkeer.rxhttpclient;
 
 import org.asynchttpclient.BoundRequestBuilder;
 import org.asynchttpclient.Param;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
 import org.asynchttpclient.oauth.ConsumerKey;
 import org.asynchttpclient.oauth.OAuthSignatureCalculator;
 import org.asynchttpclient.oauth.RequestToken;
 import org.asynchttpclient.request.body.generator.BodyGenerator;
+import org.asynchttpclient.request.body.generator.ByteArrayBodyGenerator;
+import org.asynchttpclient.request.body.generator.FileBodyGenerator;
+import org.asynchttpclient.request.body.generator.InputStreamBodyGenerator;
 import org.asynchttpclient.request.body.multipart.ByteArrayPart;
 import org.asynchttpclient.request.body.multipart.FilePart;
 import org.asynchttpclient.request.body.multipart.StringPart;
@@ -13,10 +18,13 @@ import org.asynchttpclient.util.Utf8UrlEncoder;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
 
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_ENCODING;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static org.asynchttpclient.util.HttpConstants.Methods.GET;
 
@@ -39,6 +47,9 @@ public class ClientRequestBuilder {
     private String requestToken;
     private String requestSecret;
 
+    private DeflatingBodyGenerator.Encoding bodyEncoding;
+    private int compressionLevel;
+
     ClientRequestBuilder(RxHttpClient client) {
         inner = new BoundRequestBuilder( client.inner(), GET, false);
         this.client = client;
@@ -52,11 +63,65 @@ public class ClientRequestBuilder {
             OAuthSignatureCalculator calc = new OAuthSignatureCalculator(consumerKey, token);
             inner.setSignatureCalculator(calc);
         }
-        ClientRequest request = new ClientRequest(inner.build());
+        Request built = inner.build();
+        if (bodyEncoding != null) {
+            built = compressBody(built);
+        }
+        if (ResumingBodyGenerator.isApplicable(built.getBodyGenerator())) {
+            built = new RequestBuilder(built)
+                    .setBody(new ResumingBodyGenerator(built.getBodyGenerator()))
+                    .build();
+        }
+        ClientRequest request = new ClientRequest(built);
         signRequest(request);
         return request;
     }
 
+    private Request compressBody(Request request) {
+        BodyGenerator body = toBodyGenerator(request);
+        if (body == null) {
+            return request;
+        }
+        //setting a byte[] body first clears the original body data, which would otherwise take precedence
+        Request compressed = new RequestBuilder(request)
+                .setBody((byte[]) null)
+                .setBody(new DeflatingBodyGenerator(body, bodyEncoding, compressionLevel))
+                .setHeader(CONTENT_ENCODING, bodyEncoding.getHeaderValue())
+                .build();
+        compressed.getHeaders().remove(CONTENT_LENGTH);
+        return compressed;
+    }
+
+    private static BodyGenerator toBodyGenerator(Request request) {
+        if (request.getBodyGenerator() != null) {
+            return request.getBodyGenerator();
+        } else if (request.getByteData() != null) {
+            return new ByteArrayBodyGenerator(request.getByteData());
+        } else if (request.getStringData() != null) {
+            Charset charset = request.getCharset() == null ? StandardCharsets.UTF_8 : request.getCharset();
+            return new ByteArrayBodyGenerator(request.getStringData().getBytes(charset));
+        } else if (request.getCompositeByteData() != null) {
+            return new ByteArrayBodyGenerator(concat(request.getCompositeByteData()));
+        } else if (request.getFile() != null) {
+            return new FileBodyGenerator(request.getFile());
+        } else if (request.getStreamData() != null) {
+            return new InputStreamBodyGenerator(request.getStreamData());
+        }
+        //no body, or a body (form parameters, multipart) that is left uncompressed
+        return null;
+    }
+
+    private static byte[] concat(List<byte[]> parts) {
+        int length = parts.stream().mapToInt(p -> p.length).sum();
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, bytes, offset, part.length);
+            offset += part.length;
+        }
+        return bytes;
+    }
+
     private void signRequest(ClientRequest request) {
         client.getRequestSigners().forEach(s -> s.sign(request));
     }
@@ -145,6 +210,28 @@ public class ClientRequestBuilder {
         return this;
     }
 
+    /**
+     * Sets a region of a file as the request body.
+     * <p>
+     * The region is not read into memory: on plain HTTP connections it is transferred directly from the file to the
+     * socket (using {@code sendfile} where the platform supports it); on TLS connections it is read in chunks. Several
+     * regions of the same file can be uploaded concurrently, each in its own request.
+     *
+     * @param file   the file
+     * @param offset the position in the file of the first byte of the region
+     * @param length the length of the region in bytes
+     * @return this {@code ClientRequestBuilder}
+     * @throws IllegalArgumentException if the region does not lie within the file
+     */
+    public ClientRequestBuilder setBody(File file, long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > file.length()) {
+            throw new IllegalArgumentException(String.format("Region [%d, %d) does not lie within file %s of %d bytes",
+                    offset, offset + length, file, file.length()));
+        }
+        inner.setBody(new FileBodyGenerator(file, offset, length));
+        return this;
+    }
+
 //    public ClientRequestBuilder setConnectionPoolKeyStrategy(ConnectionPoolPartitioning connectionPoolKeyStrategy) {
 //        inner.setConnectionPoolKeyStrategy(connectionPoolKeyStrategy);
 //    return this;}
@@ -294,11 +381,51 @@ public class ClientRequestBuilder {
         return this;
     }
 
+    /**
+     * Sets the generator of the request body.
+     * <p>
+     * The bodies of the generator may implement {@link SuspendableBody}, to suspend the upload until more content is
+     * available.
+     *
+     * @param bodyGenerator the generator of the request body
+     * @return this {@code ClientRequestBuilder}
+     */
     public ClientRequestBuilder setBody(BodyGenerator bodyGenerator) {
         inner.setBody(bodyGenerator);
         return this;
     }
 
+    /**
+     * Compresses the request body with the default compression level.
+     *
+     * @param encoding the content encoding
+     * @return this {@code ClientRequestBuilder}
+     * @see #setBodyCompression(DeflatingBodyGenerator.Encoding, int)
+     */
+    public ClientRequestBuilder setBodyCompression(DeflatingBodyGenerator.Encoding encoding) {
+        return setBodyCompression(encoding, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Compresses the request body with the specified encoding and compression level, and sets the
+     * {@code Content-Encoding} header.
+     * <p>
+     * The body is compressed incrementally, while it is written, by a {@link DeflatingBodyGenerator}. The compressed
+     * body is sent with chunked transfer encoding. Form parameters and multipart bodies are not compressed.
+     *
+     * @param encoding the content encoding
+     * @param level    the compression level (0-9, or -1 for the default level)
+     * @return this {@code ClientRequestBuilder}
+     */
+    public ClientRequestBuilder setBodyCompression(DeflatingBodyGenerator.Encoding encoding, int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.bodyEncoding = encoding;
+        this.compressionLevel = level;
+        return this;
+    }
+
     public ClientRequestBuilder addHeader(String name, String value) {
         if (name.equalsIgnoreCase("Accept")) {
             hasAcceptHeader = true;
@@ -0,0 +1,331 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FeedableBodyGenerator;
+import org.asynchttpclient.request.body.generator.FileBodyGenerator;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A BodyGenerator that compresses the body of another {@code BodyGenerator} with gzip or deflate.
+ * <p>
+ * The body is compressed incrementally: each time the transport asks for the next chunk of the body, just enough
+ * uncompressed bytes are pulled from the wrapped body to fill it. The body is never materialized as a whole. When the
+ * wrapped body has no more bytes yet (see {@link SuspendableBody}), the bytes compressed so far are flushed, so that the
+ * receiver can decompress everything that was produced.
+ * {@link Deflater}s are pooled, so that their (native) memory is reused across requests.
+ * <p>
+ * This generator does not set the {@code Content-Encoding} header. Use
+ * {@link ClientRequestBuilder#setBodyCompression(Encoding, int)} to compress a request body and set the header.
+ */
+public class DeflatingBodyGenerator implements BodyGenerator {
+
+    /**
+     * The supported content encodings.
+     */
+    public enum Encoding {
+        GZIP("gzip", true),
+        DEFLATE("deflate", false);
+
+        final private String headerValue;
+        final private boolean nowrap;
+        final private Queue<Deflater> pool = new ConcurrentLinkedQueue<>();
+        final private AtomicInteger pooled = new AtomicInteger();
+
+        Encoding(String headerValue, boolean nowrap) {
+            this.headerValue = headerValue;
+            this.nowrap = nowrap;
+        }
+
+        /**
+         * Returns the value of the {@code Content-Encoding} header for this encoding.
+         *
+         * @return the value of the {@code Content-Encoding} header for this encoding.
+         */
+        public String getHeaderValue() {
+            return headerValue;
+        }
+
+        private Deflater acquire(int level) {
+            Deflater deflater = pool.poll();
+            if (deflater == null) {
+                deflater = new Deflater(level, nowrap);
+            } else {
+                pooled.decrementAndGet();
+                deflater.setLevel(level);
+            }
+            return deflater;
+        }
+
+        private void release(Deflater deflater) {
+            deflater.reset();
+            if (pooled.incrementAndGet() <= MAX_POOLED_DEFLATERS) {
+                pool.offer(deflater);
+            } else {
+                pooled.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+
+    private static final int MAX_POOLED_DEFLATERS = 32;
+    private static final int INPUT_BUFFER_SIZE = 16 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    final private BodyGenerator delegate;
+    final private Encoding encoding;
+    final private int level;
+
+    /**
+     * Creates an instance with the default compression level.
+     *
+     * @param delegate the generator of the uncompressed body
+     * @param encoding the content encoding
+     */
+    public DeflatingBodyGenerator(BodyGenerator delegate, Encoding encoding) {
+        this(delegate, encoding, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates an instance
+     *
+     * @param delegate the generator of the uncompressed body
+     * @param encoding the content encoding
+     * @param level    the compression level (0-9, or -1 for the default level)
+     */
+    public DeflatingBodyGenerator(BodyGenerator delegate, Encoding encoding, int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.delegate = delegate;
+        this.encoding = encoding;
+        this.level = level;
+    }
+
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public SuspendableBody createBody() {
+        return new DeflatingBody(createSourceBody());
+    }
+
+    private Body createSourceBody() {
+        if (delegate instanceof FileBodyGenerator) {
+            //a FileBodyGenerator does not create bodies, as files are normally sent by the transport itself
+            FileBodyGenerator file = (FileBodyGenerator) delegate;
+            return new FileRegionBody(file.getFile(), file.getRegionSeek(), file.getRegionLength());
+        }
+        return delegate.createBody();
+    }
+
+    /**
+     * Reads a region of a file through a {@code FileChannel}.
+     */
+    private static class FileRegionBody implements Body {
+
+        final private FileChannel channel;
+        final private long end;
+        private long position;
+
+        FileRegionBody(File file, long offset, long length) {
+            try {
+                this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public long getContentLength() {
+            return end - position;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) throws IOException {
+            if (position >= end) {
+                return BodyState.STOP;
+            }
+            int n = target.writeBytes(channel, position, (int) Math.min(target.writableBytes(), end - position));
+            if (n < 0) {
+                throw new EOFException("File ended before the end of the region");
+            }
+            position += n;
+            return BodyState.CONTINUE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private class DeflatingBody implements SuspendableBody {
+
+        final private Body source;
+        final private Deflater deflater;
+        final private CRC32 crc = encoding == Encoding.GZIP ? new CRC32() : null;
+        final private ByteBuf input = PooledByteBufAllocator.DEFAULT.heapBuffer(INPUT_BUFFER_SIZE, INPUT_BUFFER_SIZE);
+        final private byte[] output = new byte[INPUT_BUFFER_SIZE];
+
+        //bytes of the gzip header or trailer that still have to be written
+        private byte[] pending;
+        private int pendingOffset;
+
+        //whether the deflater holds compressed bytes that were not flushed since the last input
+        private boolean unflushed = false;
+        private boolean sourceDone = false;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        DeflatingBody(Body source) {
+            this.source = source;
+            this.deflater = encoding.acquire(level);
+            if (crc != null) {
+                pending = GZIP_HEADER;
+            }
+        }
+
+        /**
+         * Passes the listener on to the wrapped body (or generator), so that the body writer is resumed when it has
+         * data.
+         */
+        @Override
+        public void setListener(FeedListener listener) {
+            if (source instanceof SuspendableBody) {
+                ((SuspendableBody) source).setListener(listener);
+            } else if (delegate instanceof FeedableBodyGenerator) {
+                ((FeedableBodyGenerator) delegate).setListener(listener);
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public BodyState transferTo(ByteBuf target) throws IOException {
+            int written = 0;
+            while (target.isWritable()) {
+                if (pending != null) {
+                    written += writePending(target);
+                    continue;
+                }
+                if (finished) {
+                    break;
+                }
+                if (deflater.needsInput() && !sourceDone) {
+                    BodyState state = pullInput();
+                    if (state == BodyState.SUSPEND && deflater.needsInput()) {
+                        written += flush(target);
+                        return written > 0 ? BodyState.CONTINUE : BodyState.SUSPEND;
+                    }
+                }
+                int n = deflater.deflate(output, 0, Math.min(output.length, target.writableBytes()));
+                if (n > 0) {
+                    target.writeBytes(output, 0, n);
+                    written += n;
+                } else if (deflater.finished()) {
+                    finished = true;
+                    if (crc != null) {
+                        pending = gzipTrailer();
+                    }
+                }
+            }
+            if (written == 0 && finished && pending == null) {
+                return BodyState.STOP;
+            }
+            return BodyState.CONTINUE;
+        }
+
+        private BodyState pullInput() throws IOException {
+            input.clear();
+            BodyState state = source.transferTo(input);
+            if (input.isReadable()) {
+                byte[] array = input.array();
+                int offset = input.arrayOffset() + input.readerIndex();
+                int length = input.readableBytes();
+                if (crc != null) {
+                    crc.update(array, offset, length);
+                }
+                deflater.setInput(array, offset, length);
+                unflushed = true;
+            }
+            if (state == BodyState.STOP) {
+                sourceDone = true;
+                deflater.finish();
+            }
+            return state;
+        }
+
+        /**
+         * Writes the bytes that the deflater holds back, so that they are not delayed until the source produces more.
+         */
+        private int flush(ByteBuf target) {
+            int written = 0;
+            while (unflushed && target.isWritable()) {
+                int length = Math.min(output.length, target.writableBytes());
+                int n = deflater.deflate(output, 0, length, Deflater.SYNC_FLUSH);
+                target.writeBytes(output, 0, n);
+                written += n;
+                if (n < length) {
+                    unflushed = false;
+                }
+            }
+            return written;
+        }
+
+        private int writePending(ByteBuf target) {
+            int n = Math.min(pending.length - pendingOffset, target.writableBytes());
+            target.writeBytes(pending, pendingOffset, n);
+            pendingOffset += n;
+            if (pendingOffset == pending.length) {
+                pending = null;
+                pendingOffset = 0;
+            }
+            return n;
+        }
+
+        private byte[] gzipTrailer() {
+            int crcValue = (int) crc.getValue();
+            int size = (int) deflater.getBytesRead();
+            return new byte[]{
+                    (byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16), (byte) (crcValue >> 24),
+                    (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                source.close();
+            } finally {
+                input.release();
+                encoding.release(deflater);
+            }
+        }
+    }
+
+}
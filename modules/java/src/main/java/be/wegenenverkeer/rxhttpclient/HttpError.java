@@ -27,6 +27,14 @@ abstract public class HttpError extends RuntimeException {
         return statusCode;
     }
 
+    /**
+     * Returns the response, if it was received completely.
+     * <p>
+     * The response is owned by the receiver of this error. Close it when it is no longer needed, so that a body that was
+     * written to a temporary file is removed (see {@link Builder#setMaxInMemoryResponseSize(long)}).
+     *
+     * @return the response, if it was received completely
+     */
     public Optional<ServerResponse> getResponse() {
         return Optional.ofNullable(response);
     }
@@ -0,0 +1,113 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.asynchttpclient.util.HttpUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Reads JSON response bodies into values of a given type.
+ * <p>
+ * The body is parsed directly from its bytes (or, for bodies that are not held in a heap buffer, from its
+ * {@code InputStream}), without first decoding it into a {@code String}. The character encoding is detected by Jackson
+ * (UTF-8, UTF-16 or UTF-32). Only a body with another charset in its {@code Content-Type} header is decoded while it
+ * is parsed. An {@code ObjectReader} is created once per type, and reused for all responses.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @see Builder#setObjectMapper(ObjectMapper)
+ */
+public class JsonResponseReader {
+
+    final private ObjectMapper mapper;
+    final private ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public JsonResponseReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return mapper;
+    }
+
+    /**
+     * Returns a transformer that reads a response body as a value of the specified type.
+     *
+     * @param type the type of the value
+     * @param <T>  the type of the value
+     * @return a transformer for {@code ServerResponse}s
+     */
+    public <T> Function<ServerResponse, T> forType(Class<T> type) {
+        return forType(mapper.constructType(type));
+    }
+
+    /**
+     * Returns a transformer that reads a response body as a value of the specified (generic) type.
+     *
+     * @param type the type of the value
+     * @param <T>  the type of the value
+     * @return a transformer for {@code ServerResponse}s
+     */
+    public <T> Function<ServerResponse, T> forType(TypeReference<T> type) {
+        return forType(mapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * Returns the {@code ObjectReader} for the specified type, e.g. to parse a stream of values with the same
+     * configuration as whole response bodies.
+     *
+     * @param type the type of the value
+     * @return the (cached) {@code ObjectReader} for the type
+     */
+    public ObjectReader readerFor(Class<?> type) {
+        return readerFor(mapper.constructType(type));
+    }
+
+    private ObjectReader readerFor(JavaType type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    private <T> Function<ServerResponse, T> forType(JavaType type) {
+        ObjectReader reader = readerFor(type);
+        return response -> read(reader, response);
+    }
+
+    private static <T> T read(ObjectReader reader, ServerResponse response) {
+        try {
+            Charset charset = declaredCharset(response);
+            if (charset != null && !charset.name().startsWith("UTF-")) {
+                //Jackson only detects the UTF encodings, so other charsets are decoded before parsing
+                try (Reader in = new InputStreamReader(response.getResponseBodyAsStream(), charset)) {
+                    return reader.readValue(in);
+                }
+            }
+            ByteBuffer body = response.getHeapBodyBuffer();
+            if (body != null) {
+                return reader.readValue(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            }
+            try (InputStream in = response.getResponseBodyAsStream()) {
+                return reader.readValue(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Charset declaredCharset(ServerResponse response) {
+        return response.getContentType()
+                .map(HttpUtils::extractContentTypeCharsetAttribute)
+                .orElse(null);
+    }
+}
@@ -0,0 +1,29 @@
+package be.wegenenverkeer.rxhttpclient;
+
+/**
+ * How the execute methods that return a complete {@link ServerResponse} collect the response body.
+ *
+ * @see Builder#setResponseAggregation(ResponseAggregation)
+ */
+public enum ResponseAggregation {
+
+    /**
+     * The body parts are kept as received, and concatenated each time the body is read. This is the default.
+     */
+    PARTS,
+
+    /**
+     * The body parts are copied into a single heap buffer as they arrive. When the response has a
+     * {@code Content-Length} header, the buffer is allocated with that size up front; otherwise it grows as needed and
+     * is trimmed once when the response is complete. {@link ServerResponse#getResponseBodyAsBytes()} returns the
+     * buffer without copying it.
+     */
+    HEAP,
+
+    /**
+     * Like {@link #HEAP}, but the buffer is a direct buffer, outside of the Java heap. This suits bodies that are read
+     * through {@link ServerResponse#getResponseBodyAsByteBuffer()} or {@link ServerResponse#getResponseBodyAsStream()};
+     * reading a direct buffer as a byte array or a String requires a copy.
+     */
+    DIRECT
+}
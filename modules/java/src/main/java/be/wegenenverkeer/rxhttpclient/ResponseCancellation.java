@@ -0,0 +1,136 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.ListenableFuture;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks the progress of a response, so that its request can be cancelled according to a {@link CancellationPolicy}.
+ * <p>
+ * The {@code AsyncHandler} of the request reports the headers and body parts as they are received. When the request is
+ * cancelled, it is either aborted, which closes the connection, or the handler is switched to draining: it then
+ * discards the rest of the response, and the connection returns to the pool once the response is complete. The
+ * outcome is counted in the {@link CancellationStats} of the client.
+ */
+public final class ResponseCancellation {
+
+    final private CancellationStats stats;
+    final private AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    //the progress is written by the I/O thread, and read by the thread that cancels
+    private volatile long contentLength = -1;
+    private volatile long received = 0;
+    private volatile long startNanos = 0;
+    private volatile boolean completed = false;
+    private volatile boolean draining = false;
+    private volatile long receivedAtCancel = 0;
+
+    public ResponseCancellation() {
+        this(new CancellationStats());
+    }
+
+    public ResponseCancellation(CancellationStats stats) {
+        this.stats = stats;
+    }
+
+    public void onHeaders(HttpHeaders headers) {
+        startNanos = System.nanoTime();
+        String value = headers.get(HttpHeaderNames.CONTENT_LENGTH);
+        if (value != null) {
+            try {
+                contentLength = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+        }
+    }
+
+    public void onBodyPart(HttpResponseBodyPart bodyPart) {
+        received += bodyPart.length();
+    }
+
+    /**
+     * Marks the response as complete; a complete response is no longer cancelled.
+     */
+    public void onCompleted() {
+        completed = true;
+        if (draining) {
+            stats.recordDrained(received - receivedAtCancel);
+        }
+    }
+
+    public void onThrowable() {
+        if (draining) {
+            stats.recordDrainFailed();
+        }
+    }
+
+    /**
+     * Returns true if the request was cancelled and the rest of the response must be discarded.
+     *
+     * @return true if the response is being drained
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Cancels the request, unless its response is already complete. Depending on the policy and on what remains of
+     * the response, the request is aborted or drained.
+     *
+     * @param future the future of the request
+     * @param policy the cancellation policy
+     * @return true if the response is drained, false if the request is aborted (or was already complete)
+     */
+    public boolean cancel(ListenableFuture<?> future, CancellationPolicy policy) {
+        if (completed || future.isDone() || !cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        long remaining = remainingBytes();
+        if (policy.shouldDrain(remaining, remainingMillis(remaining))) {
+            receivedAtCancel = received;
+            draining = true;
+            return true;
+        }
+        stats.recordAborted();
+        future.abort(new CancellationException("Request cancelled"));
+        return false;
+    }
+
+    /**
+     * Records that the handler aborts the request itself (by returning {@code State.ABORT}), because the request was
+     * cancelled before its future was known. Has no effect when the request was already cancelled through its future,
+     * or its response is complete.
+     *
+     * @return true if the handler must abort the request, false if the cancellation was already decided
+     */
+    public boolean abortByHandler() {
+        if (completed || !cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+        stats.recordAborted();
+        return true;
+    }
+
+    private long remainingBytes() {
+        long length = contentLength;
+        return length < 0 || startNanos == 0 ? -1 : Math.max(0, length - received);
+    }
+
+    /**
+     * Estimates the time to receive the remaining bytes at the rate the response was received so far.
+     */
+    private long remainingMillis(long remaining) {
+        long bytes = received;
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (remaining < 0 || bytes == 0 || elapsedMillis == 0) {
+            return -1;
+        }
+        return (long) (remaining * ((double) elapsedMillis / bytes));
+    }
+}
@@ -0,0 +1,76 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.netty.EagerResponseBodyPart;
+import org.asynchttpclient.netty.LazyResponseBodyPart;
+
+/**
+ * An {@link AsyncCompletionHandlerBase} that can be used when the client is configured with lazy response body parts.
+ * Only used internally.
+ * <p>
+ * The buffer of a lazy body part is only valid during the callback, so it is copied before it is accumulated in
+ * the response. This is the same copy that is made by default for eager body parts.
+ * <p>
+ * The progress of the response is tracked, so that the request can be cancelled (see {@link ResponseCancellation}).
+ */
+public class ResponseCompletionHandler extends AsyncCompletionHandlerBase {
+
+    final private ResponseCancellation cancellation;
+
+    public ResponseCompletionHandler() {
+        this(new CancellationStats());
+    }
+
+    public ResponseCompletionHandler(CancellationStats stats) {
+        this.cancellation = new ResponseCancellation(stats);
+    }
+
+    public ResponseCancellation getCancellation() {
+        return cancellation;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpHeaders headers) throws Exception {
+        cancellation.onHeaders(headers);
+        return super.onHeadersReceived(headers);
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart content) throws Exception {
+        cancellation.onBodyPart(content);
+        if (cancellation.isDraining()) {
+            return State.CONTINUE;
+        }
+        return super.onBodyPartReceived(eager(content));
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        cancellation.onThrowable();
+        super.onThrowable(t);
+    }
+
+    @Override
+    public Response onCompleted(Response response) {
+        cancellation.onCompleted();
+        return response;
+    }
+
+    /**
+     * Returns a body part that remains valid after the callback in which it is received.
+     *
+     * @param bodyPart the received body part
+     * @return the body part, or an eager copy when it is a lazy body part
+     */
+    public static HttpResponseBodyPart eager(HttpResponseBodyPart bodyPart) {
+        if (bodyPart instanceof LazyResponseBodyPart) {
+            ByteBuf buf = ((LazyResponseBodyPart) bodyPart).getBuf();
+            return new EagerResponseBodyPart(buf, bodyPart.isLast());
+        }
+        return bodyPart;
+    }
+}
@@ -0,0 +1,34 @@
+package be.wegenenverkeer.rxhttpclient;
+
+/**
+ * Unchecked Exception for responses with a body that exceeds the maximum response size.
+ * <p>
+ * The request is aborted as soon as the size is known to exceed the maximum: when the response headers are received
+ * if the response has a {@code Content-Length} header, otherwise when the body parts that exceed it are received.
+ *
+ * @see Builder#setMaxResponseSize(long)
+ */
+public class ResponseTooLargeException extends RuntimeException {
+
+    final private long size;
+    final private long maxSize;
+
+    public ResponseTooLargeException(long size, long maxSize) {
+        super(String.format("Response body of (at least) %d bytes exceeds maximum of %d bytes", size, maxSize));
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the size of the body, or the number of bytes received when the request was aborted.
+     *
+     * @return the (known) size of the body
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
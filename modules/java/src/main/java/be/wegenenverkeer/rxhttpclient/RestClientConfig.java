@@ -1,5 +1,8 @@
 package be.wegenenverkeer.rxhttpclient;
 
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
 /**
  * Created by Karel Maesen, Geovise BVBA on 2019-07-12.
  */
@@ -11,6 +14,17 @@ public class RestClientConfig {
     private boolean throttling = false;
     private int throttlingMaxWait = 0;
     private int maxConnections = -1;
+    private int streamBufferSize = 1024;
+    private long maxInMemoryResponseSize = -1;
+    private long maxResponseSize = -1;
+    private Path responseSpillDirectory = null;
+    private ResponseAggregation responseAggregation = ResponseAggregation.PARTS;
+    private JsonResponseReader jsonResponseReader = null;
+    //null: the client runs transformers on a pool of its own
+    private Executor transformerExecutor = null;
+    private int transformerThreads = Runtime.getRuntime().availableProcessors();
+    private CancellationPolicy cancellationPolicy = CancellationPolicy.ABORT;
+    final private CancellationStats cancellationStats = new CancellationStats();
 
     public void enableThrottling() {
         this.throttling = true;
@@ -36,6 +50,97 @@ public class RestClientConfig {
         return maxConnections;
     }
 
+    public void setStreamBufferSize(int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public void setMaxInMemoryResponseSize(long maxInMemoryResponseSize) {
+        this.maxInMemoryResponseSize = maxInMemoryResponseSize;
+    }
+
+    public long getMaxInMemoryResponseSize() {
+        return maxInMemoryResponseSize;
+    }
+
+    public void setMaxResponseSize(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    public long getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public void setResponseSpillDirectory(Path responseSpillDirectory) {
+        this.responseSpillDirectory = responseSpillDirectory;
+    }
+
+    public Path getResponseSpillDirectory() {
+        return responseSpillDirectory;
+    }
+
+    public void setResponseAggregation(ResponseAggregation responseAggregation) {
+        this.responseAggregation = responseAggregation;
+    }
+
+    public ResponseAggregation getResponseAggregation() {
+        return responseAggregation;
+    }
+
+    public void setTransformerExecutor(Executor transformerExecutor) {
+        this.transformerExecutor = transformerExecutor;
+    }
+
+    public Executor getTransformerExecutor() {
+        return transformerExecutor;
+    }
+
+    public void setTransformerThreads(int transformerThreads) {
+        this.transformerThreads = transformerThreads;
+    }
+
+    public int getTransformerThreads() {
+        return transformerThreads;
+    }
+
+    public void setCancellationPolicy(CancellationPolicy cancellationPolicy) {
+        this.cancellationPolicy = cancellationPolicy;
+    }
+
+    public CancellationPolicy getCancellationPolicy() {
+        return cancellationPolicy;
+    }
+
+    public CancellationStats getCancellationStats() {
+        return cancellationStats;
+    }
+
+    public synchronized void setJsonResponseReader(JsonResponseReader jsonResponseReader) {
+        this.jsonResponseReader = jsonResponseReader;
+    }
+
+    /**
+     * Returns the reader for typed JSON responses. Unless one is set, a reader with a default {@code ObjectMapper} is
+     * created when it is first needed, so that Jackson is only required by clients that read JSON.
+     */
+    public synchronized JsonResponseReader getJsonResponseReader() {
+        if (jsonResponseReader == null) {
+            jsonResponseReader = new JsonResponseReader(new com.fasterxml.jackson.databind.ObjectMapper());
+        }
+        return jsonResponseReader;
+    }
+
+    /**
+     * Returns true if complete responses must be aggregated by an {@link AggregatingResponseHandler}, because the
+     * size of their bodies is limited or a single-buffer aggregation is configured.
+     */
+    public boolean isAggregatingResponses() {
+        return maxInMemoryResponseSize >= 0 || maxResponseSize >= 0 || responseAggregation != ResponseAggregation.PARTS;
+    }
+
     void setBaseUrl(String baseUrl) {
         this.baseUrl = chopLastForwardSlash(baseUrl);
     }
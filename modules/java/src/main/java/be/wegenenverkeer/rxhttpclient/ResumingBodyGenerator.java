@@ -0,0 +1,86 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.buffer.ByteBuf;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FeedableBodyGenerator;
+import org.asynchttpclient.request.body.generator.FileBodyGenerator;
+import org.asynchttpclient.request.body.generator.InputStreamBodyGenerator;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Adapts a {@code BodyGenerator} whose bodies can suspend (see {@link SuspendableBody}) to the
+ * {@code FeedableBodyGenerator} that AsyncHttpClient requires before it resumes a suspended body writer. Only used
+ * internally.
+ * <p>
+ * AsyncHttpClient sets a new listener on the generator of the request each time it starts writing a body that it
+ * created. Each listener is handed to a single body, the oldest open body that has none yet, so that a request that
+ * is sent more than once never resumes the body writer of another exchange. {@link #feed(ByteBuf, boolean)} is never
+ * called by AsyncHttpClient.
+ */
+final class ResumingBodyGenerator implements FeedableBodyGenerator {
+
+    final private BodyGenerator delegate;
+    final private Queue<SuspendableBody> awaitingListener = new ConcurrentLinkedQueue<>();
+
+    ResumingBodyGenerator(BodyGenerator delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns true if the bodies of the specified generator are written by AsyncHttpClient's generic body writer,
+     * and do not receive a listener otherwise.
+     */
+    static boolean isApplicable(BodyGenerator generator) {
+        //files and input streams have dedicated writers, and feedable generators already receive the listener
+        return generator != null
+                && !(generator instanceof FeedableBodyGenerator)
+                && !(generator instanceof FileBodyGenerator)
+                && !(generator instanceof InputStreamBodyGenerator);
+    }
+
+    @Override
+    public Body createBody() {
+        Body body = delegate.createBody();
+        if (!(body instanceof SuspendableBody)) {
+            return body;
+        }
+        SuspendableBody suspendable = (SuspendableBody) body;
+        awaitingListener.offer(suspendable);
+        return new Body() {
+            @Override
+            public long getContentLength() {
+                return suspendable.getContentLength();
+            }
+
+            @Override
+            public BodyState transferTo(ByteBuf target) throws IOException {
+                return suspendable.transferTo(target);
+            }
+
+            @Override
+            public void close() throws IOException {
+                //a body that is closed before it is written must not take the listener of another body
+                awaitingListener.remove(suspendable);
+                suspendable.close();
+            }
+        };
+    }
+
+    @Override
+    public void setListener(FeedListener listener) {
+        SuspendableBody body = awaitingListener.poll();
+        if (body != null) {
+            body.setListener(listener);
+        }
+    }
+
+    @Override
+    public boolean feed(ByteBuf buffer, boolean isLast) {
+        throw new UnsupportedOperationException("The content is provided by the wrapped BodyGenerator");
+    }
+}
@@ -0,0 +1,127 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.netty.LazyResponseBodyPart;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A part of the response body that is backed by a retained, reference-counted Netty buffer.
+ * <p>
+ * When the client is built with {@link Builder#setLazyResponseBodyParts(boolean)}, the buffer is the one that
+ * received the bytes from the network, so no copy is made. Instances must be released (or closed, e.g. in a
+ * try-with-resources block) when the bytes are no longer needed. Instances that are garbage collected without
+ * being released are reported by Netty's {@link ResourceLeakDetector}.
+ */
+public final class RetainedServerResponseBodyPart implements ServerResponseBodyPart, AutoCloseable {
+
+    private static final ResourceLeakDetector<RetainedServerResponseBodyPart> leakDetector =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(RetainedServerResponseBodyPart.class);
+
+    final private ByteBuf buf;
+    final private boolean isLast;
+    final private AtomicBoolean released = new AtomicBoolean(false);
+    final private ResourceLeakTracker<RetainedServerResponseBodyPart> leak;
+
+    RetainedServerResponseBodyPart(ByteBuf buf, boolean isLast) {
+        this.buf = buf;
+        this.isLast = isLast;
+        this.leak = leakDetector.track(this);
+    }
+
+    /**
+     * Retains the bytes of the specified body part.
+     * <p>
+     * The bytes of a lazy body part are retained without copying, other body parts are wrapped.
+     *
+     * @param bodyPart the received body part
+     * @return a {@code RetainedServerResponseBodyPart} for the bytes of the body part
+     */
+    public static RetainedServerResponseBodyPart retain(HttpResponseBodyPart bodyPart) {
+        if (bodyPart instanceof LazyResponseBodyPart) {
+            return new RetainedServerResponseBodyPart(((LazyResponseBodyPart) bodyPart).getBuf().retainedSlice(), bodyPart.isLast());
+        }
+        return new RetainedServerResponseBodyPart(Unpooled.wrappedBuffer(bodyPart.getBodyPartBytes()), bodyPart.isLast());
+    }
+
+    /**
+     * Returns a read-only view of the bytes of this body part. The view is only valid until this instance is released.
+     *
+     * @return a read-only view of the bytes of this body part.
+     */
+    @Override
+    public ByteBuffer getBodyByteBuffer() {
+        checkNotReleased();
+        return buf.nioBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a copy of the bytes of this body part.
+     *
+     * @return a copy of the bytes of this body part.
+     */
+    @Override
+    public byte[] getBodyPartBytes() {
+        checkNotReleased();
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    @Override
+    public boolean isLast() {
+        return isLast;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        checkNotReleased();
+        return buf.readableBytes() == 0;
+    }
+
+    /**
+     * Returns the number of bytes in this body part.
+     *
+     * @return the number of bytes in this body part.
+     */
+    public int length() {
+        checkNotReleased();
+        return buf.readableBytes();
+    }
+
+    /**
+     * Releases the underlying buffer. Invoking this method more than once has no effect.
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            buf.release();
+            if (leak != null) {
+                leak.close(this);
+            }
+        }
+    }
+
+    public boolean isReleased() {
+        return released.get();
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    private void checkNotReleased() {
+        if (released.get()) {
+            throw new IllegalStateException("Body part is already released");
+        }
+        if (leak != null) {
+            leak.record();
+        }
+    }
+
+}
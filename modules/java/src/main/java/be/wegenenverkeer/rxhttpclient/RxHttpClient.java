@@ -7,6 +7,7 @@ import java.io.Closeable;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 /**
@@ -15,6 +16,23 @@ import java.util.function.Function;
 public interface RxHttpClient extends Closeable {
     <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer);
 
+    /**
+     * Executes a request and returns a CompletableFuture for the transformed response.
+     * <p>
+     * The transformer runs on the specified executor, instead of the transformer executor of the client.
+     * </p>
+     *
+     * @param request     the request to send
+     * @param transformer a function that transforms the {@link ServerResponse} to a value of F
+     * @param executor    the executor that runs the transformer
+     * @param <F>         the type of return value
+     * @return a CompletableFuture for the transformed server response
+     * @see Builder#setTransformerExecutor(Executor)
+     */
+    default <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer, Executor executor) {
+        return execute(request, Function.identity()).thenApplyAsync(transformer, executor);
+    }
+
     /**
      * Executes a request and returns an Observable for the complete response.
      * <p>
@@ -87,4 +105,14 @@ public interface RxHttpClient extends Closeable {
     AsyncHttpClient inner();
 
     int getMaxConnections();
+
+    /**
+     * Returns the counts of the outcomes of cancelled requests. Implementations that don't track cancellations return
+     * empty statistics.
+     *
+     * @return the cancellation statistics of this client
+     */
+    default CancellationStats getCancellationStats() {
+        return new CancellationStats();
+    }
 }
@@ -5,7 +5,9 @@ import org.asynchttpclient.Response;
 import org.asynchttpclient.uri.Uri;
 import org.asynchttpclient.util.HttpUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -23,16 +25,24 @@ import java.util.function.Function;
  * <p>
  * Created by Karel Maesen, Geovise BVBA on 06/12/14.
  */
-public class ServerResponse implements ServerResponseStatus, ServerResponseHeaders, ServerResponseBodyPart {
+public class ServerResponse implements ServerResponseStatus, ServerResponseHeaders, ServerResponseBodyPart, AutoCloseable {
 
     final private Response response;
 
+    //the body, if it is aggregated by an AggregatingResponseHandler instead of the Response
+    final private AggregatedBody body;
+
     public static ServerResponse wrap(Response response) {
         return new ServerResponse(response);
     }
 
     public ServerResponse(Response response) {
+        this(response, null);
+    }
+
+    ServerResponse(Response response, AggregatedBody body) {
         this.response = response;
+        this.body = body;
     }
 
     public int getStatusCode() {
@@ -45,7 +55,7 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
 
 
     public String getResponseBody(Charset charset) {
-        return response.getResponseBody(charset);
+        return body != null ? body.getString(charset) : response.getResponseBody(charset);
     }
 
     public String getResponseBody() {
@@ -62,12 +72,33 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
         return getResponseBody(charset);
     }
 
+    /**
+     * Returns the body as a byte array.
+     * <p>
+     * A body that was spilled to a temporary file (see {@link Builder#setMaxInMemoryResponseSize(long)}) is read
+     * completely into memory, so {@link #getResponseBodyAsStream()} is preferable for large bodies.
+     */
     public byte[] getResponseBodyAsBytes() {
-        return response.getResponseBodyAsBytes();
+        return body != null ? body.getBytes() : response.getResponseBodyAsBytes();
     }
 
     public InputStream getResponseBodyAsStream() {
-        return response.getResponseBodyAsStream();
+        return body != null ? body.getInputStream() : response.getResponseBodyAsStream();
+    }
+
+    /**
+     * Returns the body as a heap buffer, if it can be had without copying more than {@link #getResponseBodyAsBytes()}
+     * would, or null for bodies in a direct buffer or a temporary file.
+     */
+    ByteBuffer getHeapBodyBuffer() {
+        if (body == null) {
+            return response.getResponseBodyAsByteBuffer();
+        }
+        if (body instanceof AggregatedBody.InMemory) {
+            ByteBuffer buffer = body.getByteBuffer();
+            return buffer.hasArray() ? buffer : null;
+        }
+        return null;
     }
 
     public Map<String, List<String>> getHeaders() {
@@ -91,8 +122,13 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
         return response.isRedirected();
     }
 
+    /**
+     * Returns the body as a ByteBuffer.
+     * <p>
+     * For a body that was spilled to a temporary file, this is a read-only, memory-mapped buffer of the file.
+     */
     public ByteBuffer getResponseBodyAsByteBuffer() {
-        return response.getResponseBodyAsByteBuffer();
+        return body != null ? body.getByteBuffer() : response.getResponseBodyAsByteBuffer();
     }
 
     public Optional<String> getContentType() {
@@ -104,7 +140,7 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
     }
 
     public boolean hasResponseBody() {
-        return response.hasResponseBody();
+        return body != null ? body.length() > 0 : response.hasResponseBody();
     }
 
     public Uri getUri() {
@@ -112,12 +148,21 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
     }
 
     public String getResponseBodyExcerpt(int maxLength) {
-        return CompatUtilities.bodyExcerpt(response, maxLength);
+        return getResponseBodyExcerpt(maxLength, "UTF-8");
     }
 
     public String getResponseBodyExcerpt(int maxLength, String charset) {
-        return CompatUtilities.bodyExcerpt(response, maxLength, charset);
-
+        if (body == null) {
+            return CompatUtilities.bodyExcerpt(response, maxLength, charset);
+        }
+        //decode only a prefix, that is long enough for maxLength characters
+        try (InputStream in = body.getInputStream()) {
+            byte[] prefix = in.readNBytes((int) Math.min(body.length(), Math.min(Integer.MAX_VALUE, 4L * maxLength)));
+            String text = new String(prefix, Charset.forName(charset));
+            return text.length() <= maxLength ? text : text.substring(0, maxLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public Optional<String> getHeader(String name) {
@@ -129,6 +174,26 @@ public class ServerResponse implements ServerResponseStatus, ServerResponseHeade
         return getResponseBodyAsBytes();
     }
 
+    @Override
+    public ByteBuffer getBodyByteBuffer() {
+        return getResponseBodyAsByteBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Deletes the temporary file of a body that was spilled to disk (see {@link Builder#setMaxInMemoryResponseSize(long)}),
+     * after which the body can no longer be read. Buffers and streams that were obtained before remain readable on
+     * platforms that allow deleting open files.
+     * <p>
+     * Does nothing for bodies that are held in memory. A spilled body that is not closed is deleted when the response
+     * is garbage collected.
+     */
+    @Override
+    public void close() {
+        if (body != null) {
+            body.close();
+        }
+    }
+
     @Override
     public boolean isLast() {
         return true;
@@ -1,5 +1,6 @@
 package be.wegenenverkeer.rxhttpclient;
 
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 /**
@@ -15,6 +16,14 @@ public interface ServerResponseBodyPart extends ServerResponseElement {
      */
     byte[] getBodyPartBytes();
 
+    /**
+     * Returns a read-only view of the bytes of the response body.
+     * @return a read-only view of the bytes of the response body.
+     */
+    default ByteBuffer getBodyByteBuffer() {
+        return ByteBuffer.wrap(getBodyPartBytes()).asReadOnlyBuffer();
+    }
+
     boolean isLast();
 
     default boolean isEmpty() {
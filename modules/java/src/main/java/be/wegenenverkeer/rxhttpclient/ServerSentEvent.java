@@ -0,0 +1,101 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * An event received on a {@code text/event-stream} (Server-Sent Events) response.
+ */
+public final class ServerSentEvent {
+
+    /**
+     * The event type of events without an {@code event} field.
+     */
+    public static final String DEFAULT_EVENT = "message";
+
+    final private String id;
+    final private String event;
+    final private String data;
+    final private long retry;
+
+    /**
+     * Creates an instance
+     *
+     * @param id    the value of the {@code id} field of the event, or null
+     * @param event the event type
+     * @param data  the data of the event; the values of multiple {@code data} fields are joined with line feeds
+     * @param retry the reconnection time in milliseconds that was set with the event, or -1
+     */
+    public ServerSentEvent(String id, String event, String data, long retry) {
+        this.id = id;
+        this.event = event == null ? DEFAULT_EVENT : event;
+        this.data = data;
+        this.retry = retry;
+    }
+
+    /**
+     * Returns the id that was set by this event.
+     * <p>
+     * Events without an {@code id} field return an empty {@code Optional}, even though the last event id of the
+     * stream is still in effect.
+     *
+     * @return the id that was set by this event.
+     */
+    public Optional<String> getId() {
+        return Optional.ofNullable(id);
+    }
+
+    /**
+     * Returns the event type; "message" if the event has no {@code event} field.
+     *
+     * @return the event type
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns the data of the event
+     *
+     * @return the data of the event
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * Returns the reconnection time (in milliseconds) that was set with this event, if any.
+     *
+     * @return the reconnection time that was set with this event, if any.
+     */
+    public OptionalLong getRetry() {
+        return retry < 0 ? OptionalLong.empty() : OptionalLong.of(retry);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ServerSentEvent that = (ServerSentEvent) o;
+        return retry == that.retry &&
+                Objects.equals(id, that.id) &&
+                event.equals(that.event) &&
+                data.equals(that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, event, data, retry);
+    }
+
+    @Override
+    public String toString() {
+        return "ServerSentEvent{" +
+                "id=" + id +
+                ", event=" + event +
+                ", data=" + data +
+                (retry < 0 ? "" : ", retry=" + retry) +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.FeedListener;
+
+/**
+ * A request {@link Body} whose content is produced asynchronously.
+ * <p>
+ * When no content is available yet, {@link #transferTo(io.netty.buffer.ByteBuf)} returns
+ * {@link Body.BodyState#SUSPEND}, and the body writer waits until the body notifies its listener that content was
+ * added (or that the body is complete). The client sets the listener of each body that it writes; see
+ * {@link ClientRequestBuilder#setBody(org.asynchttpclient.request.body.generator.BodyGenerator)}.
+ */
+public interface SuspendableBody extends Body {
+
+    /**
+     * Sets the listener that resumes the body writer of this body.
+     *
+     * @param listener the listener to notify when content is added
+     */
+    void setListener(FeedListener listener);
+}
@@ -31,6 +31,11 @@ import java.util.stream.Collectors;
  * Created by Karel Maesen, Geovise BVBA on 06/06/16.
  */
 public class AwsSignature4Signer implements RequestSigner {
+    /**
+     * The header that holds the hex-encoded SHA-256 hash of the request payload.
+     */
+    public static final String CONTENT_SHA256_HEADER = "x-amz-content-sha256";
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final AwsServiceEndPoint endPoint;
@@ -79,16 +84,31 @@ public class AwsSignature4Signer implements RequestSigner {
         this(serviceEndPoint, credentialsProvider, true);
     }
 
+    /**
+     * Returns the canonical request for the specified request.
+     * <p>
+     * If the request has an {@code x-amz-content-sha256} header (as S3 requires), its value is used as the payload
+     * hash. This allows signing requests with binary or streamed bodies, for which the hash is computed by the caller.
+     * Otherwise the hash of the String body is used.
+     *
+     * @param request the request
+     * @return the canonical request
+     */
     public String canonicalRequest(ClientRequest request) {
-        return canonicalRequest(
+        Optional<String> declaredHash = declaredPayloadHash(request.getHeaders());
+        return canonicalRequestWithPayloadHash(
                 request.getMethod(),
                 request.getUrl(),
                 request.getQueryParams(),
                 request.getHeaders(),
-                request.getStringData());
+                declaredHash.orElseGet(() -> digest(request.getStringData() == null ? "" : request.getStringData())));
     }
 
     public String canonicalRequest(String method, String uri, Map<String, List<String>> queryParams, Map<String, List<String>> headers, String body) {
+        return canonicalRequestWithPayloadHash(method, uri, queryParams, headers, digest(body == null ? "" : body));
+    }
+
+    private String canonicalRequestWithPayloadHash(String method, String uri, Map<String, List<String>> queryParams, Map<String, List<String>> headers, String payloadHash) {
         return method.toUpperCase()
                 + "\n"
                 + canonicalUri(uri)
@@ -99,7 +119,15 @@ public class AwsSignature4Signer implements RequestSigner {
                 + "\n"
                 + signedHeaders(headers)
                 + "\n"
-                + digest(body == null ? "" : body);
+                + payloadHash;
+    }
+
+    private static Optional<String> declaredPayloadHash(Map<String, List<String>> headers) {
+        return headers.entrySet()
+                .stream()
+                .filter(e -> CONTENT_SHA256_HEADER.equalsIgnoreCase(e.getKey()) && !e.getValue().isEmpty())
+                .map(e -> e.getValue().get(0).trim())
+                .findFirst();
     }
 
     public AwsCredentials getCredentials() {
@@ -0,0 +1,79 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import be.wegenenverkeer.rxhttpclient.AggregatingResponseHandler;
+import be.wegenenverkeer.rxhttpclient.RestClientConfig;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import io.reactivex.rxjava3.processors.AsyncProcessor;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static be.wegenenverkeer.rxhttpclient.rxjava.CompleteResponseHandler.withCompleteResponse;
+
+/**
+ * An {@link AggregatingResponseHandler} that pushes the transformed response to a specified {@link AsyncProcessor}.
+ * <p>
+ * The response is closed as soon as it is transformed (see {@link ServerResponse#close()}), unless the transformer
+ * returns the response itself.
+ *
+ * @see AsyncCompletionHandlerWrapper
+ */
+class AggregatingCompletionHandlerWrapper<F> extends AggregatingResponseHandler {
+
+    final private AsyncProcessor<? super F> subject;
+    final private Function<ServerResponse, F> handler;
+    final private Executor executor;
+
+    AggregatingCompletionHandlerWrapper(AsyncProcessor<? super F> subject, Function<ServerResponse, F> transform, Executor executor, RestClientConfig config) {
+        super(config);
+        if (subject == null || transform == null || executor == null) throw new IllegalArgumentException();
+        this.subject = subject;
+        this.handler = transform;
+        this.executor = executor;
+    }
+
+    @Override
+    public ServerResponse onCompleted() throws Exception {
+        ServerResponse response = super.onCompleted();
+        if (response == null) {
+            //drained after cancellation
+            return null;
+        }
+        try {
+            executor.execute(() -> complete(response));
+        } catch (Throwable t) {
+            response.close();
+            subject.onError(t);
+        }
+        return response;
+    }
+
+    private void complete(ServerResponse response) {
+        try {
+            withCompleteResponse(
+                    response,
+                    (r) -> {
+                        F value = null;
+                        try {
+                            value = handler.apply(r);
+                        } finally {
+                            //a transformer that returns the response itself leaves closing it to the subscriber
+                            if (value != r) r.close();
+                        }
+                        if (value != null) subject.onNext(value);
+                        subject.onComplete();
+                    },
+                    subject::onError,
+                    subject::onError
+            );
+        } catch (Throwable t) {
+            subject.onError(t);
+        }
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+        super.onThrowable(t);
+        subject.onError(t);
+    }
+}
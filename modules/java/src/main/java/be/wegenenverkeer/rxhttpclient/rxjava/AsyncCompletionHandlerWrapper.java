@@ -1,14 +1,20 @@
 package be.wegenenverkeer.rxhttpclient.rxjava;
 
+import be.wegenenverkeer.rxhttpclient.CancellationStats;
+import be.wegenenverkeer.rxhttpclient.ResponseCancellation;
+import be.wegenenverkeer.rxhttpclient.ResponseCompletionHandler;
 import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.reactivex.rxjava3.exceptions.ProtocolViolationException;
 import io.reactivex.rxjava3.processors.AsyncProcessor;
 import io.reactivex.rxjava3.subjects.AsyncSubject;
 import org.asynchttpclient.AsyncCompletionHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import static be.wegenenverkeer.rxhttpclient.ServerResponse.wrap;
@@ -25,6 +31,8 @@ class AsyncCompletionHandlerWrapper<F> extends AsyncCompletionHandler<F> {
 
     final private AsyncProcessor<? super F> subject;
     final private Function<ServerResponse, F> handler;
+    final private Executor executor;
+    final private ResponseCancellation cancellation;
 
 
     /**
@@ -32,15 +40,51 @@ class AsyncCompletionHandlerWrapper<F> extends AsyncCompletionHandler<F> {
      *
      * @param subject   the subject that receives the ServerResponse, after transformation
      * @param transform the transformation function
+     * @param executor  the executor that runs the transformation function
+     * @param stats     the statistics in which the outcome of a cancellation is counted
      */
-    AsyncCompletionHandlerWrapper(AsyncProcessor<? super F> subject, Function<ServerResponse, F> transform) {
-        if (subject == null || transform == null) throw new IllegalArgumentException();
+    AsyncCompletionHandlerWrapper(AsyncProcessor<? super F> subject, Function<ServerResponse, F> transform, Executor executor, CancellationStats stats) {
+        if (subject == null || transform == null || executor == null) throw new IllegalArgumentException();
         this.subject = subject;
         this.handler = transform;
+        this.executor = executor;
+        this.cancellation = new ResponseCancellation(stats);
+    }
+
+    ResponseCancellation getCancellation() {
+        return cancellation;
+    }
+
+    @Override
+    public State onHeadersReceived(HttpHeaders headers) throws Exception {
+        cancellation.onHeaders(headers);
+        return super.onHeadersReceived(headers);
+    }
+
+    @Override
+    public State onBodyPartReceived(HttpResponseBodyPart content) throws Exception {
+        cancellation.onBodyPart(content);
+        if (cancellation.isDraining()) {
+            return State.CONTINUE;
+        }
+        return super.onBodyPartReceived(ResponseCompletionHandler.eager(content));
     }
 
     @Override
     public F onCompleted(Response response) {
+        cancellation.onCompleted();
+        if (cancellation.isDraining()) {
+            return null;
+        }
+        try {
+            executor.execute(() -> complete(response));
+        } catch (Throwable t) {
+            subject.onError(t);
+        }
+        return null;
+    }
+
+    private void complete(Response response) {
         try {
             withCompleteResponse(
                     response,
@@ -59,11 +103,11 @@ class AsyncCompletionHandlerWrapper<F> extends AsyncCompletionHandler<F> {
             }
             subject.onError(t);
         }
-        return null;
     }
 
     @Override
     public void onThrowable(Throwable t) {
+        cancellation.onThrowable();
         subject.onError(t);
     }
 
@@ -0,0 +1,148 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A transformer that "de-chunks" a Flowable of response body bytes into a Flowable of messages, split at a separator.
+ * <p>
+ * Unlike {@link Dechunker}, this works on the raw bytes. The separator is matched literally, with a precomputed
+ * Knuth-Morris-Pratt matcher whose state is carried across chunks, and the bytes of an incomplete message are kept
+ * in a growable carry-over buffer. Each byte is inspected only once, so the work is linear in the size of the response
+ * no matter how large the messages are relative to the chunks. Empty messages are skipped.
+ * <p>
+ * The transformer is back-pressured: messages are only emitted on request.
+ */
+public class ByteDechunker implements FlowableTransformer<byte[], byte[]> {
+
+    private final byte[] separator;
+    private final int[] failure;
+
+    public ByteDechunker(byte[] separator) {
+        if (separator == null || separator.length == 0) {
+            throw new IllegalArgumentException("Separator must not be empty");
+        }
+        this.separator = separator.clone();
+        this.failure = failureFunction(this.separator);
+    }
+
+    @Override
+    public Publisher<byte[]> apply(Flowable<byte[]> upstream) {
+        return Flowable.defer(() -> {
+            Splitter splitter = new Splitter(separator, failure);
+            return upstream
+                    .concatMapIterable(splitter::split)
+                    .concatWith(Maybe.fromCallable(splitter::remainder));
+        });
+    }
+
+    /**
+     * Computes the KMP failure function: for each prefix of the pattern, the length of the longest proper prefix that
+     * is also a suffix.
+     */
+    private static int[] failureFunction(byte[] pattern) {
+        int[] failure = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = failure[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
+
+    /**
+     * The splitting state of a single subscription.
+     */
+    static final class Splitter {
+        final byte[] separator;
+        final int[] failure;
+
+        //the number of separator bytes matched so far
+        private int matched = 0;
+
+        //the bytes of the current, incomplete message
+        private byte[] carry = new byte[256];
+        private int carryLength = 0;
+
+        Splitter(byte[] separator, int[] failure) {
+            this.separator = separator;
+            this.failure = failure;
+        }
+
+        List<byte[]> split(byte[] chunk) {
+            List<byte[]> messages = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < chunk.length; i++) {
+                byte b = chunk[i];
+                while (matched > 0 && b != separator[matched]) {
+                    matched = failure[matched - 1];
+                }
+                if (b == separator[matched]) {
+                    matched++;
+                }
+                if (matched == separator.length) {
+                    matched = 0;
+                    //exclusive end of the message in the chunk; negative if the separator started in the carry
+                    int end = i + 1 - separator.length;
+                    addMessage(messages, chunk, start, end);
+                    start = i + 1;
+                }
+            }
+            append(chunk, start, chunk.length);
+            return messages;
+        }
+
+        /**
+         * Returns the last message, if any, when the response is complete.
+         */
+        byte[] remainder() {
+            if (carryLength == 0) {
+                return null;
+            }
+            byte[] last = Arrays.copyOf(carry, carryLength);
+            carryLength = 0;
+            return last;
+        }
+
+        private void addMessage(List<byte[]> messages, byte[] chunk, int start, int end) {
+            byte[] message;
+            if (carryLength == 0) {
+                message = Arrays.copyOfRange(chunk, start, end);
+            } else if (end >= start) {
+                message = Arrays.copyOf(carry, carryLength + end - start);
+                System.arraycopy(chunk, start, message, carryLength, end - start);
+            } else {
+                //part of the separator is in the carry-over buffer
+                message = Arrays.copyOf(carry, carryLength + end - start);
+            }
+            carryLength = 0;
+            if (message.length > 0) {
+                messages.add(message);
+            }
+        }
+
+        private void append(byte[] chunk, int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return;
+            }
+            if (carryLength + length > carry.length) {
+                carry = Arrays.copyOf(carry, Math.max(carry.length * 2, carryLength + length));
+            }
+            System.arraycopy(chunk, from, carry, carryLength, length);
+            carryLength += length;
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.reactivex.rxjava3.core.FlowableOperator;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.operators.SimplePlainQueue;
+import io.reactivex.rxjava3.operators.SpscLinkedArrayQueue;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An operator that coalesces the (often small) body parts of a response into larger batches of bytes.
+ * <p>
+ * Body parts are collected in a pooled buffer until the batch holds at least {@code minSize} bytes, or until
+ * {@code maxDelay} has passed since the first bytes were added to the batch. A batch never grows beyond
+ * {@code maxSize} bytes, except for body parts that are larger than {@code maxSize} themselves: these are emitted
+ * as they are.
+ * <p>
+ * Body parts are requested from upstream in batches, for as long as the subscriber has demand that the coalesced
+ * batches cannot serve. Batches are emitted by a work-in-progress drain loop, never while holding a lock.
+ */
+public class ChunkCoalescer implements FlowableOperator<byte[], byte[]> {
+
+    private final int minSize;
+    private final int maxSize;
+    private final long maxDelay;
+    private final TimeUnit unit;
+    private final Scheduler scheduler;
+
+    /**
+     * Creates an instance that uses the computation {@code Scheduler} for the delay.
+     *
+     * @param minSize  the minimum size of a batch, unless the maximum delay has passed or the response is complete
+     * @param maxSize  the maximum size of a batch
+     * @param maxDelay the maximum time the first bytes of a batch are held back
+     * @param unit     the time unit of the maximum delay
+     */
+    public ChunkCoalescer(int minSize, int maxSize, long maxDelay, TimeUnit unit) {
+        this(minSize, maxSize, maxDelay, unit, Schedulers.computation());
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param minSize   the minimum size of a batch, unless the maximum delay has passed or the response is complete
+     * @param maxSize   the maximum size of a batch
+     * @param maxDelay  the maximum time the first bytes of a batch are held back
+     * @param unit      the time unit of the maximum delay
+     * @param scheduler the scheduler on which batches are emitted when the maximum delay has passed
+     */
+    public ChunkCoalescer(int minSize, int maxSize, long maxDelay, TimeUnit unit, Scheduler scheduler) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("Requires 0 < minSize <= maxSize");
+        }
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException("Maximum delay must be strictly positive");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxDelay = maxDelay;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Subscriber<? super byte[]> apply(Subscriber<? super byte[]> subscriber) {
+        return new Op(subscriber, minSize, maxSize, maxDelay, unit, scheduler.createWorker());
+    }
+
+    static final class Op implements FlowableSubscriber<byte[]>, Subscription {
+
+        //the number of body parts requested from upstream at a time, and the number below which that is replenished
+        static final int PREFETCH = 16;
+        static final int LIMIT = PREFETCH / 4;
+
+        final Subscriber<? super byte[]> child;
+        final int minSize;
+        final int maxSize;
+        final long maxDelay;
+        final TimeUnit unit;
+        final Scheduler.Worker worker;
+        Subscription s;
+
+        //the batch under construction is guarded by this. The lock is never held while calling child or upstream,
+        //so the flush timer never keeps the thread that delivers body parts waiting for longer than an append.
+        private ByteBuf batch;
+        private Disposable timer;
+        private long batchNr;
+
+        //completed batches are offered while holding the lock, and only polled by the drain loop
+        private final SimplePlainQueue<byte[]> ready = new SpscLinkedArrayQueue<>(16);
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger upstreamOutstanding = new AtomicInteger();
+        private volatile boolean done;
+        private Throwable error;
+        private volatile boolean cancelled;
+
+        Op(Subscriber<? super byte[]> child, int minSize, int maxSize, long maxDelay, TimeUnit unit, Scheduler.Worker worker) {
+            this.child = child;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.maxDelay = maxDelay;
+            this.unit = unit;
+            this.worker = worker;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            this.s = s;
+            child.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(byte[] bytes) {
+            if (cancelled || done) {
+                return;
+            }
+            upstreamOutstanding.decrementAndGet();
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                append(bytes);
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                RxJavaPlugins.onError(t);
+                return;
+            }
+            synchronized (this) {
+                flushBatch();
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            synchronized (this) {
+                flushBatch();
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                RxJavaPlugins.onError(new IllegalArgumentException("n > 0 required but it was " + n));
+                return;
+            }
+            long r, u;
+            do {
+                r = requested.get();
+                u = r + n;
+                if (u < 0) {
+                    u = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(r, u));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            synchronized (this) {
+                releaseBatch();
+            }
+            s.cancel();
+            //lets the drain loop discard the ready batches
+            drain();
+        }
+
+        private void append(byte[] bytes) {
+            int size = batch == null ? 0 : batch.readableBytes();
+            if (size > 0 && size + bytes.length > maxSize) {
+                flushBatch();
+                size = 0;
+            }
+            if (size == 0 && bytes.length >= minSize) {
+                //large enough on its own, so no need to copy
+                ready.offer(bytes);
+                return;
+            }
+            if (batch == null) {
+                batch = PooledByteBufAllocator.DEFAULT.heapBuffer(Math.min(maxSize, 2 * minSize), maxSize);
+            }
+            batch.writeBytes(bytes);
+            if (batch.readableBytes() >= minSize) {
+                flushBatch();
+            } else if (size == 0) {
+                scheduleFlush();
+            }
+        }
+
+        private void scheduleFlush() {
+            final long nr = ++batchNr;
+            timer = worker.schedule(() -> {
+                boolean flushed;
+                synchronized (Op.this) {
+                    flushed = nr == batchNr && !cancelled;
+                    if (flushed) {
+                        flushBatch();
+                    }
+                }
+                if (flushed) {
+                    drain();
+                }
+            }, maxDelay, unit);
+        }
+
+        private void flushBatch() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+            batchNr++;
+            if (batch != null && batch.isReadable()) {
+                ready.offer(ByteBufUtil.getBytes(batch));
+                batch.clear();
+            }
+        }
+
+        private void releaseBatch() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+            if (batch != null) {
+                batch.release();
+                batch = null;
+            }
+            worker.dispose();
+        }
+
+        /**
+         * Emits ready batches for as far as there is demand, terminates when done, and otherwise requests more body
+         * parts when there is demand that cannot be served by the ready batches. Only one thread at a time runs the
+         * loop, without holding the lock; a thread that finds the loop taken by another thread only signals that there
+         * is more work.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                if (cancelled) {
+                    ready.clear();
+                } else {
+                    long r = requested.get();
+                    long e = 0L;
+
+                    while (e != r) {
+                        if (cancelled) {
+                            break;
+                        }
+                        boolean d = done;
+                        byte[] bytes = ready.poll();
+                        boolean empty = bytes == null;
+                        if (d && empty) {
+                            terminate();
+                            return;
+                        }
+                        if (empty) {
+                            break;
+                        }
+                        child.onNext(bytes);
+                        e++;
+                    }
+
+                    if (e == r && !cancelled && done && ready.isEmpty()) {
+                        terminate();
+                        return;
+                    }
+
+                    if (e != 0L && r != Long.MAX_VALUE) {
+                        r = requested.addAndGet(-e);
+                    }
+                    //demand that is left over could not be served by the ready batches
+                    if (r != 0L && !done && !cancelled) {
+                        requestUpstream();
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void requestUpstream() {
+            int outstanding = upstreamOutstanding.get();
+            if (outstanding <= LIMIT) {
+                int n = PREFETCH - outstanding;
+                upstreamOutstanding.addAndGet(n);
+                s.request(n);
+            }
+        }
+
+        private void terminate() {
+            synchronized (this) {
+                releaseBatch();
+            }
+            Throwable t = error;
+            if (t != null) {
+                child.onError(t);
+            } else {
+                child.onComplete();
+            }
+        }
+    }
+
+}
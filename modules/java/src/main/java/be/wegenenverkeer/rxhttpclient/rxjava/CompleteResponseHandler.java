@@ -28,4 +28,21 @@ class CompleteResponseHandler {
         }
     }
 
+    public static void withCompleteResponse(
+            ServerResponse response,
+            Consumer<ServerResponse> handleSuccess,
+            Consumer<Throwable> handleClientError,
+            Consumer<Throwable> handleServerError
+    ) {
+        int status = response.getStatusCode();
+        String statusText = response.getStatusText().orElse(null);
+        if (status < 400) {
+            handleSuccess.accept(response);
+        } else if (status < 500) {
+            handleClientError.accept(new HttpClientError(status, response, "request failed with status = " + statusText));
+        } else {
+            handleServerError.accept(new HttpServerError(status, response, "request failed with status = " + statusText));
+        }
+    }
+
 }
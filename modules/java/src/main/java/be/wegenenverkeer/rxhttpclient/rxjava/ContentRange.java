@@ -0,0 +1,32 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The value of a {@code Content-Range} response header.
+ */
+final class ContentRange {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    final long start;
+    final long end;
+    //the length of the resource, or -1 if unknown
+    final long length;
+
+    private ContentRange(long start, long end, long length) {
+        this.start = start;
+        this.end = end;
+        this.length = length;
+    }
+
+    static ContentRange parse(String value) {
+        Matcher matcher = CONTENT_RANGE.matcher(value);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Invalid Content-Range: " + value);
+        }
+        long length = matcher.group(3).equals("*") ? -1 : Long.parseLong(matcher.group(3));
+        return new ContentRange(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)), length);
+    }
+}
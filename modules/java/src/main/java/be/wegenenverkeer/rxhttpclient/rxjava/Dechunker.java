@@ -6,10 +6,15 @@ import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
 import java.util.Arrays;
+import java.util.regex.Pattern;
 
 /**
  * An operator that "de-chunks" the Observerable of <code>ServerResponseElement</code>s in an Observable of messages.
  * <p>
+ * The separator is interpreted as a regular expression. Prefer the {@link ByteDechunker}, which works on the raw bytes
+ * and is linear in the size of the response. Binary, length-prefixed streams are handled by the
+ * {@link LengthPrefixedFramer}.
+ * <p>
  * Created by Karel Maesen, Geovise BVBA on 2019-07-05.
  */
 public class Dechunker implements FlowableOperator<String, String> {
@@ -22,6 +27,16 @@ public class Dechunker implements FlowableOperator<String, String> {
 
     }
 
+    /**
+     * Creates a {@code Dechunker} that matches the separator literally, rather than as a regular expression.
+     *
+     * @param separator the separator
+     * @return a {@code Dechunker} for the literal separator
+     */
+    public static Dechunker literal(String separator) {
+        return new Dechunker(Pattern.quote(separator));
+    }
+
     @Override
     public Subscriber<? super String> apply(Subscriber<? super String> subscriber) {
         return new Op(subscriber, separator);
@@ -80,14 +95,12 @@ public class Dechunker implements FlowableOperator<String, String> {
 
         private String[] toChunks(String chunk) {
             String withPrevious = previous + chunk;
-            String[] parts = withPrevious.split(separator);
-            if (chunk.endsWith(separator)) {
-                previous = "";
-                return parts;
-            } else {
-                previous = parts[parts.length - 1];
-                return Arrays.copyOfRange(parts, 0, parts.length - 1);
-            }
+            //the last part is the (possibly empty) start of the next message. Splitting with a negative limit keeps
+            //that part even when it is empty, so there is no need to check whether the chunk ends with the separator
+            //(which cannot be checked literally when the separator is a regular expression).
+            String[] parts = withPrevious.split(separator, -1);
+            previous = parts[parts.length - 1];
+            return Arrays.copyOfRange(parts, 0, parts.length - 1);
         }
     }
 
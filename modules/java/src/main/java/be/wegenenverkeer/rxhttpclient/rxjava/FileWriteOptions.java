@@ -0,0 +1,83 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+/**
+ * Options for writing a response body to a file (see {@link RxJavaHttpClient#executeToFile}).
+ * <p>
+ * Instances are immutable; the {@code with...} methods return a modified copy.
+ */
+public final class FileWriteOptions {
+
+    /**
+     * Receives the progress of a response body that is written to a file.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * Invoked after each part of the body is written, on the thread that writes the file.
+         *
+         * @param bytesWritten  the number of bytes written so far
+         * @param contentLength the length of the body, or -1 if unknown
+         */
+        void onProgress(long bytesWritten, long contentLength);
+    }
+
+    /**
+     * The default options: no progress listener, no fsync, and the body is written directly to the target file.
+     */
+    public static final FileWriteOptions DEFAULT = new FileWriteOptions(null, false, false);
+
+    final private ProgressListener progressListener;
+    final private boolean fsync;
+    final private boolean atomicMove;
+
+    private FileWriteOptions(ProgressListener progressListener, boolean fsync, boolean atomicMove) {
+        this.progressListener = progressListener;
+        this.fsync = fsync;
+        this.atomicMove = atomicMove;
+    }
+
+    /**
+     * Returns options with the specified progress listener.
+     *
+     * @param listener the progress listener
+     * @return a copy of these options with the specified progress listener
+     */
+    public FileWriteOptions withProgressListener(ProgressListener listener) {
+        return new FileWriteOptions(listener, fsync, atomicMove);
+    }
+
+    /**
+     * Returns options that (don't) force the file contents to disk before the download completes.
+     *
+     * @param fsync whether to force the file contents to disk
+     * @return a copy of these options with the fsync option set
+     */
+    public FileWriteOptions withFsync(boolean fsync) {
+        return new FileWriteOptions(progressListener, fsync, atomicMove);
+    }
+
+    /**
+     * Returns options that (don't) write the body to a temporary file in the target directory, which is atomically
+     * moved to the target when the body is complete. The target then never holds a partial body, and a failed
+     * download leaves an existing target untouched.
+     *
+     * @param atomicMove whether to move a temporary file into place
+     * @return a copy of these options with the atomic move option set
+     */
+    public FileWriteOptions withAtomicMove(boolean atomicMove) {
+        return new FileWriteOptions(progressListener, fsync, atomicMove);
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public boolean isAtomicMove() {
+        return atomicMove;
+    }
+}
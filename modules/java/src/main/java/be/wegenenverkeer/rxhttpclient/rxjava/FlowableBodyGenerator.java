@@ -1,156 +1,378 @@
 package be.wegenenverkeer.rxhttpclient.rxjava;
 
+import be.wegenenverkeer.rxhttpclient.SuspendableBody;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableSubscriber;
+import io.reactivex.rxjava3.operators.SimplePlainQueue;
+import io.reactivex.rxjava3.operators.SpscLinkedArrayQueue;
 import org.asynchttpclient.request.body.Body;
 import org.asynchttpclient.request.body.generator.BodyGenerator;
-import org.reactivestreams.Subscriber;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.ReactiveStreamsBodyGenerator;
 import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A BodyGenerator that subscribes to an Observable and creates a com.ning.http.client.Body from it.
- * You can specify the capacity of the underlying blocking queue.
- * By default the subscription happens from the code that calls the getBody() method.
- * This can lead to deadlocks with respect to the queueCapacity, because when the queue is full the onNext call will block.
- * To avoid this call subscribeOn before passing in the Observable with a Scheduler specific for your use case, f.e. Schedulers.io()
- * Otherwise this is fully back-pressured.
+ * A BodyGenerator that subscribes to a Flowable of byte arrays and creates a request {@link Body} from it.
+ * <p>
+ * The producer is never blocked. Received byte arrays are put on a lock-free queue, from which the Netty body writer
+ * takes them. Items are requested from the Flowable based on a byte budget: no more items are requested than (by the
+ * average size of the items received so far) fit in the budget, minus the bytes that are still queued. When the body
+ * writer finds the queue empty it suspends, and it is resumed as soon as the next item arrives (see
+ * {@link SuspendableBody}).
+ * <p>
+ * Each call to {@link #createBody()} subscribes to the Flowable again.
+ * <p>
+ * The bytes are copied into the buffers of the body writer. For bodies that consist of {@code ByteBuffer}s or Netty
+ * {@code ByteBuf}s, use {@link #ofByteBuffers(Flowable)} or {@link #ofByteBufs(Flowable)}, which don't copy.
  */
 public class FlowableBodyGenerator implements BodyGenerator {
 
     private static final Logger logger = LoggerFactory.getLogger(FlowableBodyGenerator.class);
 
-    private static final int DEFAULT_CAPACITY = 10;
+    /**
+     * The default maximum number of bytes that are buffered.
+     */
+    public static final long DEFAULT_MAX_BUFFERED_BYTES = 256 * 1024;
 
-    private final Flowable<byte[]> observable;
-    private Subscription subscription;
+    //the item size that is assumed by the deprecated constructor
+    private static final int ASSUMED_ITEM_SIZE = 8 * 1024;
 
-    private final BlockingQueue<BodyPart> queue;
-    private volatile Throwable throwable = null;
+    private final Flowable<byte[]> observable;
+    private final long maxBufferedBytes;
+    private final long contentLength;
 
     public FlowableBodyGenerator(Flowable<byte[]> observable) {
-        this(observable, DEFAULT_CAPACITY);
+        this(observable, DEFAULT_MAX_BUFFERED_BYTES, -1);
     }
 
+    /**
+     * Creates an instance.
+     *
+     * @param observable    the Flowable of the body bytes
+     * @param queueCapacity the number of buffered items
+     * @deprecated the buffer is now bounded by a byte budget; this constructor assumes items of 8 kB. Use
+     * {@link #withMaxBufferedBytes(long)} instead.
+     */
+    @Deprecated
     public FlowableBodyGenerator(Flowable<byte[]> observable, int queueCapacity) {
+        this(observable, (long) queueCapacity * ASSUMED_ITEM_SIZE, -1);
+    }
+
+    private FlowableBodyGenerator(Flowable<byte[]> observable, long maxBufferedBytes, long contentLength) {
+        if (maxBufferedBytes < 1) {
+            throw new IllegalArgumentException("Maximum number of buffered bytes must be strictly positive");
+        }
         this.observable = observable;
-        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.contentLength = contentLength;
     }
 
-    @Override
-    public Body createBody() {
-        this.observable.subscribe(new Subscriber<>() {
+    /**
+     * Returns a copy of this generator with the specified byte budget.
+     *
+     * @param maxBufferedBytes the maximum number of bytes that are requested from the Flowable but not yet written
+     * @return a {@code FlowableBodyGenerator} with the specified byte budget
+     */
+    public FlowableBodyGenerator withMaxBufferedBytes(long maxBufferedBytes) {
+        return new FlowableBodyGenerator(observable, maxBufferedBytes, contentLength);
+    }
 
+    /**
+     * Returns a copy of this generator for a body of exactly the specified number of bytes.
+     * <p>
+     * The request is sent with a {@code Content-Length} header instead of chunked transfer encoding. The upload fails
+     * as soon as the Flowable emits more bytes than declared, or completes with fewer bytes.
+     *
+     * @param contentLength the number of bytes in the body
+     * @return a {@code FlowableBodyGenerator} with the declared content length
+     */
+    public FlowableBodyGenerator withContentLength(long contentLength) {
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("Content length must be positive");
+        }
+        return new FlowableBodyGenerator(observable, maxBufferedBytes, contentLength);
+    }
 
-            @Override
-            public void onComplete() {
-                try {
-                    queue.put(new BodyPart(new byte[0], true)); //blocks until space available in queue
-                } catch (InterruptedException e) {
-                    FlowableBodyGenerator.logger.warn("Interrupted", e);
-                }
-            }
+    /**
+     * Creates a {@code BodyGenerator} that writes the buffers of the specified Flowable to the channel without copying.
+     * <p>
+     * Each {@code ByteBuffer} is wrapped in a Netty buffer that shares its memory, and is written as an HTTP chunk.
+     * Direct (and memory-mapped) buffers reach the socket without being copied to the heap; heap buffers are copied
+     * to a direct buffer by the transport, as any heap buffer is. The buffers must not be modified until they are
+     * written.
+     *
+     * @param flowable the Flowable of the body bytes
+     * @return a {@code BodyGenerator} for the body bytes
+     */
+    public static BodyGenerator ofByteBuffers(Flowable<ByteBuffer> flowable) {
+        return ofByteBufs(flowable.map(Unpooled::wrappedBuffer));
+    }
 
-            @Override
-            public void onError(Throwable t) {
-                FlowableBodyGenerator.logger.warn("Unable to read", t);
-                FlowableBodyGenerator.this.throwable = t;
-            }
+    /**
+     * Creates a {@code BodyGenerator} that writes the buffers of the specified Flowable to the channel without copying,
+     * for a body of exactly the specified number of bytes.
+     *
+     * @param flowable      the Flowable of the body bytes
+     * @param contentLength the number of bytes in the body
+     * @return a {@code BodyGenerator} for the body bytes
+     * @see #ofByteBuffers(Flowable)
+     * @see #ofByteBufs(Flowable, long)
+     */
+    public static BodyGenerator ofByteBuffers(Flowable<ByteBuffer> flowable, long contentLength) {
+        return ofByteBufs(flowable.map(Unpooled::wrappedBuffer), contentLength);
+    }
 
-            @Override
-            public void onSubscribe(Subscription s) {
-                subscription = s;
-                subscription.request(queue.remainingCapacity());
-            }
+    /**
+     * Creates a {@code BodyGenerator} that writes the Netty buffers of the specified Flowable to the channel as they
+     * are, without copying.
+     * <p>
+     * Ownership of the buffers is transferred: they are released once they are written to the channel.
+     *
+     * @param flowable the Flowable of the body bytes
+     * @return a {@code BodyGenerator} for the body bytes
+     */
+    public static BodyGenerator ofByteBufs(Flowable<ByteBuf> flowable) {
+        return new ReactiveStreamsBodyGenerator(flowable, -1);
+    }
 
-            @Override
-            public void onNext(byte[] bytes) {
-                try {
-                    if (bytes.length > 0) {
-                        queue.put(new BodyPart(bytes, false)); //blocks until space available in queue
-                    }
-                    subscription.request(Math.max(queue.remainingCapacity(), 1)); // always request at least one
-                } catch (InterruptedException e) {
-                    FlowableBodyGenerator.logger.warn("Interrupted", e);
-                }
-            }
+    /**
+     * Creates a {@code BodyGenerator} that writes the Netty buffers of the specified Flowable to the channel as they
+     * are, for a body of exactly the specified number of bytes.
+     * <p>
+     * The request is sent with a {@code Content-Length} header instead of chunked transfer encoding. The upload fails
+     * as soon as the Flowable emits more bytes than declared, or completes with fewer bytes.
+     *
+     * @param flowable      the Flowable of the body bytes
+     * @param contentLength the number of bytes in the body
+     * @return a {@code BodyGenerator} for the body bytes
+     * @see #ofByteBufs(Flowable)
+     */
+    public static BodyGenerator ofByteBufs(Flowable<ByteBuf> flowable, long contentLength) {
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("Content length must be positive");
+        }
+        Flowable<ByteBuf> checked = Flowable.defer(() -> {
+            AtomicLong count = new AtomicLong();
+            return flowable
+                    .map(buf -> {
+                        if (count.addAndGet(buf.readableBytes()) > contentLength) {
+                            buf.release();
+                            throw tooManyBytes(contentLength);
+                        }
+                        return buf;
+                    })
+                    .concatWith(Completable.defer(() -> count.get() == contentLength
+                            ? Completable.complete()
+                            : Completable.error(tooFewBytes(count.get(), contentLength))));
         });
-        return new ObservableBody();
+        return new ReactiveStreamsBodyGenerator(checked, contentLength);
+    }
+
+    private static IOException tooManyBytes(long contentLength) {
+        return new IOException(String.format("Body has more bytes than the declared content length of %d", contentLength));
+    }
+
+    private static IOException tooFewBytes(long count, long contentLength) {
+        return new IOException(String.format("Body has %d bytes, but the declared content length is %d", count, contentLength));
     }
 
-    protected class ObservableBody implements Body {
+    @Override
+    public SuspendableBody createBody() {
+        ObservableBody body = new ObservableBody();
+        this.observable.subscribe(body);
+        return body;
+    }
+
+    protected class ObservableBody implements SuspendableBody, FlowableSubscriber<byte[]> {
+
+        //only onNext offers, only transferTo polls
+        private final SimplePlainQueue<ByteBuffer> queue = new SpscLinkedArrayQueue<>(16);
+        private final AtomicLong bufferedBytes = new AtomicLong();
+        private final AtomicLong outstanding = new AtomicLong();
+        private final AtomicInteger requesting = new AtomicInteger();
+
+        private volatile Subscription subscription;
+        private volatile boolean done;
+        private volatile Throwable throwable;
+        private volatile boolean cancelled;
+        private volatile FeedListener listener;
+
+        private long receivedItems;
+        private long receivedBytes;
+        private volatile long averageItemSize;
+
+        //only accessed by the body writer
+        private ByteBuffer current;
 
         @Override
-        public long getContentLength() {
-            return -1;
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            requestMore();
         }
 
         @Override
-        public BodyState transferTo(ByteBuf targetBuf) throws IOException {
-            if (throwable != null) {
-                throw new IOException("observable onError was called", throwable);
+        public void onNext(byte[] bytes) {
+            if (done) {
+                return;
             }
-
-            BodyPart nextPart = queue.peek();
-
-            //no data available
-            if (nextPart == null) {
-                return BodyState.SUSPEND;
+            outstanding.decrementAndGet();
+            receivedItems++;
+            receivedBytes += bytes.length;
+            averageItemSize = receivedBytes / receivedItems;
+            if (contentLength >= 0 && receivedBytes > contentLength) {
+                subscription.cancel();
+                fail(tooManyBytes(contentLength));
+                return;
             }
-
-            if (nextPart.isLast) {
-                return BodyState.STOP;
+            if (bytes.length > 0) {
+                bufferedBytes.addAndGet(bytes.length);
+                queue.offer(ByteBuffer.wrap(bytes));
+                contentAdded();
             }
+            requestMore();
+        }
 
-            // no more bytes available in nextPart
-            if (nextPart.buffer.remaining() == 0) {
-                queue.remove();
-                transferTo(targetBuf);
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                return;
             }
+            FlowableBodyGenerator.logger.warn("Unable to read", t);
+            fail(t);
+        }
 
-            // there is data available
-            int size = Math.min(nextPart.buffer.remaining(), targetBuf.writableBytes());
-            int position = nextPart.buffer.position();
-            if (size > 0) {
-                targetBuf.writeBytes(nextPart.buffer.array(), 0, size);
-                nextPart.buffer.position(position + size);
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
             }
-
-            // if all data was read, remove it from the queue
-            if (!nextPart.buffer.hasRemaining()) {
-                queue.remove();
+            if (contentLength >= 0 && receivedBytes != contentLength) {
+                fail(tooFewBytes(receivedBytes, contentLength));
+                return;
             }
+            done = true;
+            contentAdded();
+        }
 
-            if (size == -1) {
-                System.out.println("Oops, returning -1");
+        private void fail(Throwable t) {
+            throwable = t;
+            done = true;
+            contentAdded();
+        }
+
+        private void contentAdded() {
+            FeedListener l = listener;
+            if (l != null) {
+                l.onContentAdded();
             }
+        }
 
-            return BodyState.CONTINUE;
+        /**
+         * Requests as many items as fit in the byte budget. Only one thread at a time does the accounting; a
+         * thread that finds another thread busy only signals that there is more work.
+         */
+        private void requestMore() {
+            if (requesting.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                Subscription s = subscription;
+                if (s != null && !cancelled && !done) {
+                    long buffered = bufferedBytes.get();
+                    long avg = averageItemSize;
+                    long wanted = avg == 0 ? 1 : (maxBufferedBytes - buffered) / avg;
+                    if (wanted == 0 && buffered == 0) {
+                        //a single item is larger than the budget
+                        wanted = 1;
+                    }
+                    long n = wanted - outstanding.get();
+                    if (n > 0) {
+                        outstanding.addAndGet(n);
+                        s.request(n);
+                    }
+                }
+                missed = requesting.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
         }
 
         @Override
-        public void close() {
-            FlowableBodyGenerator.this.subscription.cancel();
+        public void setListener(FeedListener listener) {
+            this.listener = listener;
         }
-    }
-
-    private static class BodyPart {
-
-        private final ByteBuffer buffer;
-        private final boolean isLast;
 
-        private BodyPart(byte[] bytes, boolean isLast) {
-            this.buffer = ByteBuffer.wrap(bytes);
-            this.isLast = isLast;
+        @Override
+        public long getContentLength() {
+            return contentLength;
         }
 
+        @Override
+        public BodyState transferTo(ByteBuf targetBuf) throws IOException {
+            Throwable failure = throwable;
+            if (failure != null) {
+                //fail fast, without writing the bytes that are still queued
+                throw new IOException("observable onError was called", failure);
+            }
+            int written = 0;
+            while (targetBuf.isWritable()) {
+                boolean d = done;
+                if (current == null) {
+                    current = queue.poll();
+                }
+                if (current == null) {
+                    if (written > 0) {
+                        break;
+                    }
+                    if (d) {
+                        Throwable t = throwable;
+                        if (t != null) {
+                            throw new IOException("observable onError was called", t);
+                        }
+                        return BodyState.STOP;
+                    }
+                    //suspend until the next item arrives
+                    return BodyState.SUSPEND;
+                }
+                int size = Math.min(current.remaining(), targetBuf.writableBytes());
+                int limit = current.limit();
+                current.limit(current.position() + size);
+                targetBuf.writeBytes(current);
+                current.limit(limit);
+                written += size;
+                if (!current.hasRemaining()) {
+                    current = null;
+                }
+            }
+            if (written > 0) {
+                bufferedBytes.addAndGet(-written);
+                requestMore();
+            }
+            return BodyState.CONTINUE;
+        }
 
+        @Override
+        public void close() {
+            cancelled = true;
+            Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+            current = null;
+            queue.clear();
+        }
     }
 
 }
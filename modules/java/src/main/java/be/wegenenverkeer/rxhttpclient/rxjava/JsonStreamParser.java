@@ -0,0 +1,154 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A transformer that parses a Flowable of response body bytes into a Flowable of JSON values.
+ * <p>
+ * The bytes are fed into Jackson's non-blocking parser as they are received. If the body is a JSON array, each element
+ * of the array is emitted as soon as it is complete. Otherwise each top-level value is emitted, so that newline-delimited
+ * JSON (NDJSON) and other sequences of whitespace-separated values are supported. Only the tokens of the element that is
+ * currently being parsed are buffered; no intermediate {@code String}s are created. JSON {@code null} elements are
+ * skipped.
+ * <p>
+ * The transformer is back-pressured: elements are only emitted on request.
+ * <p>
+ * Apply it to the body bytes of a response, e.g. with a configured {@code ObjectReader}:
+ * <pre>{@code
+ * client.executeObservably(request, Function.identity())
+ *       .compose(new JsonStreamParser<>(mapper.readerFor(Feature.class)))
+ * }</pre>
+ *
+ * @param <T> the type of the elements
+ */
+public class JsonStreamParser<T> implements FlowableTransformer<byte[], T> {
+
+    private static final ObjectMapper defaultMapper = new ObjectMapper();
+
+    private final ObjectReader reader;
+
+    /**
+     * Creates an instance.
+     *
+     * @param reader the {@code ObjectReader} for the elements
+     */
+    public JsonStreamParser(ObjectReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Creates an instance that reads elements of the specified type with a default {@code ObjectMapper}.
+     *
+     * @param type the type of the elements
+     * @param <T>  the type of the elements
+     * @return a {@code JsonStreamParser} for elements of the specified type
+     */
+    public static <T> JsonStreamParser<T> forType(Class<T> type) {
+        return new JsonStreamParser<>(defaultMapper.readerFor(type));
+    }
+
+    @Override
+    public Publisher<T> apply(Flowable<byte[]> upstream) {
+        return Flowable.using(
+                () -> new Splitter<T>(reader),
+                splitter -> upstream
+                        .concatMapIterable(splitter::feed)
+                        .concatWith(Flowable.defer(() -> Flowable.fromIterable(splitter.end()))),
+                Splitter::close
+        );
+    }
+
+    /**
+     * The parsing state of a single subscription.
+     */
+    static final class Splitter<T> {
+        final ObjectReader reader;
+        final JsonParser parser;
+        final ByteArrayFeeder feeder;
+
+        private boolean started = false;
+        private boolean inArray = false;
+        //the nesting depth within the current element
+        private int depth = 0;
+        private TokenBuffer element;
+
+        Splitter(ObjectReader reader) throws IOException {
+            this.reader = reader;
+            this.parser = reader.getFactory().createNonBlockingByteArrayParser();
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        List<T> feed(byte[] bytes) throws IOException {
+            if (bytes.length == 0) {
+                return Collections.emptyList();
+            }
+            feeder.feedInput(bytes, 0, bytes.length);
+            return parseAvailable();
+        }
+
+        List<T> end() throws IOException {
+            feeder.endOfInput();
+            List<T> values = parseAvailable();
+            if (element != null || inArray) {
+                throw new JsonParseException(parser, "Unexpected end of JSON stream");
+            }
+            return values;
+        }
+
+        void close() throws IOException {
+            parser.close();
+        }
+
+        private List<T> parseAvailable() throws IOException {
+            List<T> values = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (!started) {
+                    started = true;
+                    if (token == JsonToken.START_ARRAY) {
+                        inArray = true;
+                        continue;
+                    }
+                }
+                if (inArray && element == null && token == JsonToken.END_ARRAY) {
+                    //end of the top-level array, another top-level value may follow
+                    inArray = false;
+                    started = false;
+                    continue;
+                }
+                if (element == null) {
+                    element = new TokenBuffer(parser);
+                }
+                element.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                if (depth == 0) {
+                    T value = reader.readValue(element.asParser());
+                    element = null;
+                    if (value != null) {
+                        values.add(value);
+                    }
+                }
+            }
+            return values;
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+import org.reactivestreams.Publisher;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transformer that reassembles a Flowable of response body bytes into a Flowable of length-prefixed binary frames.
+ * <p>
+ * Two kinds of length prefixes are supported: the base-128 varint prefix of delimited protobuf streams (see
+ * {@link #varint(int)}) and a fixed 4-byte big-endian prefix (see {@link #fixed32(int)}). The frames are reassembled
+ * across body part boundaries; the bytes of a frame are copied only once, from the body parts into the frame array,
+ * which is allocated as soon as the prefix has been read. Frames that are larger than the maximum frame size fail the
+ * stream with a {@link ProtocolException}, before any memory is allocated for them, as does a response that ends in
+ * the middle of a frame.
+ * <p>
+ * The transformer is back-pressured: frames are only emitted on request.
+ */
+public class LengthPrefixedFramer implements FlowableTransformer<byte[], byte[]> {
+
+    private final boolean varint;
+    private final int maxFrameSize;
+
+    private LengthPrefixedFramer(boolean varint, int maxFrameSize) {
+        if (maxFrameSize < 0) {
+            throw new IllegalArgumentException("Maximum frame size must be positive");
+        }
+        this.varint = varint;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Creates a framer for frames that are prefixed with their length as a base-128 varint, as in delimited
+     * protobuf streams.
+     *
+     * @param maxFrameSize the maximum size of a frame in bytes
+     * @return a framer for varint length-prefixed frames
+     */
+    public static LengthPrefixedFramer varint(int maxFrameSize) {
+        return new LengthPrefixedFramer(true, maxFrameSize);
+    }
+
+    /**
+     * Creates a framer for frames that are prefixed with their length as a 4-byte big-endian integer.
+     *
+     * @param maxFrameSize the maximum size of a frame in bytes
+     * @return a framer for 4-byte length-prefixed frames
+     */
+    public static LengthPrefixedFramer fixed32(int maxFrameSize) {
+        return new LengthPrefixedFramer(false, maxFrameSize);
+    }
+
+    /**
+     * Returns a transformer that emits the frames as (read-only) {@code ByteBuffer}s that wrap the frame arrays.
+     *
+     * @return a transformer that emits the frames as {@code ByteBuffer}s
+     */
+    public FlowableTransformer<byte[], ByteBuffer> asByteBuffers() {
+        return upstream -> upstream.compose(this).map(frame -> ByteBuffer.wrap(frame).asReadOnlyBuffer());
+    }
+
+    @Override
+    public Publisher<byte[]> apply(Flowable<byte[]> upstream) {
+        return Flowable.defer(() -> {
+            Splitter splitter = new Splitter(varint, maxFrameSize);
+            return upstream
+                    .concatMapIterable(splitter::split)
+                    .concatWith(Maybe.fromCallable(splitter::remainder));
+        });
+    }
+
+    /**
+     * The framing state of a single subscription.
+     */
+    static final class Splitter {
+        final boolean varint;
+        final int maxFrameSize;
+
+        //the length prefix that is being read
+        private int length = 0;
+        private int prefixBytes = 0;
+
+        //the frame that is being filled, or null while reading the prefix
+        private byte[] frame;
+        private int framePosition;
+
+        Splitter(boolean varint, int maxFrameSize) {
+            this.varint = varint;
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        List<byte[]> split(byte[] chunk) throws ProtocolException {
+            List<byte[]> frames = new ArrayList<>();
+            int i = 0;
+            while (i < chunk.length) {
+                if (frame == null) {
+                    if (readPrefixByte(chunk[i++])) {
+                        startFrame(frames);
+                    }
+                } else {
+                    int n = Math.min(frame.length - framePosition, chunk.length - i);
+                    System.arraycopy(chunk, i, frame, framePosition, n);
+                    i += n;
+                    framePosition += n;
+                    if (framePosition == frame.length) {
+                        frames.add(frame);
+                        frame = null;
+                    }
+                }
+            }
+            return frames;
+        }
+
+        /**
+         * Verifies that the response did not end in the middle of a frame.
+         */
+        byte[] remainder() throws ProtocolException {
+            if (frame != null || prefixBytes > 0) {
+                throw new ProtocolException("Response ends with an incomplete frame");
+            }
+            return null;
+        }
+
+        /**
+         * Adds a byte to the length prefix, and returns true if the prefix is complete.
+         */
+        private boolean readPrefixByte(byte b) throws ProtocolException {
+            if (varint) {
+                if (prefixBytes == 4 && (b & 0xF8) != 0) {
+                    throw new ProtocolException("Varint frame length exceeds 31 bits");
+                }
+                length |= (b & 0x7F) << (7 * prefixBytes++);
+                return (b & 0x80) == 0;
+            }
+            length = (length << 8) | (b & 0xFF);
+            prefixBytes++;
+            if (prefixBytes == 4 && length < 0) {
+                throw new ProtocolException("Frame length exceeds 31 bits");
+            }
+            return prefixBytes == 4;
+        }
+
+        private void startFrame(List<byte[]> frames) throws ProtocolException {
+            if (length > maxFrameSize) {
+                throw new ProtocolException(String.format("Frame size %d exceeds maximum of %d bytes", length, maxFrameSize));
+            }
+            byte[] next = new byte[length];
+            length = 0;
+            prefixBytes = 0;
+            if (next.length == 0) {
+                frames.add(next);
+            } else {
+                frame = next;
+                framePosition = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A transformer that applies a (CPU-bound) transform function to the elements of a Flowable in parallel, and emits
+ * the results in the original order.
+ * <p>
+ * At most {@code lookAhead} elements are requested from upstream and transformed concurrently ahead of the element
+ * that is to be emitted next, so both memory use and the number of busy threads are bounded. Backpressure is
+ * preserved: results are only emitted on request, and no new elements are requested while the look-ahead is full.
+ * <p>
+ * The transform function must be thread-safe, and should not depend on the elements that were transformed before.
+ *
+ * @param <T> the type of the elements
+ * @param <R> the type of the results
+ */
+public class OrderedParallelTransform<T, R> implements FlowableTransformer<T, R> {
+
+    private final Function<? super T, ? extends R> transform;
+    private final Scheduler scheduler;
+    private final int lookAhead;
+
+    /**
+     * Creates an instance.
+     *
+     * @param transform the transform function
+     * @param scheduler the scheduler on which the transform function is run
+     * @param lookAhead the maximum number of elements that are transformed ahead of the element that is emitted next
+     */
+    public OrderedParallelTransform(Function<? super T, ? extends R> transform, Scheduler scheduler, int lookAhead) {
+        if (lookAhead < 1) {
+            throw new IllegalArgumentException("Look-ahead must be strictly positive");
+        }
+        this.transform = transform;
+        this.scheduler = scheduler;
+        this.lookAhead = lookAhead;
+    }
+
+    /**
+     * Creates an instance that runs the transform function on the specified {@code Executor}, e.g. a
+     * {@code ForkJoinPool}.
+     *
+     * @param transform the transform function
+     * @param executor  the executor on which the transform function is run
+     * @param lookAhead the maximum number of elements that are transformed ahead of the element that is emitted next
+     * @param <T>       the type of the elements
+     * @param <R>       the type of the results
+     * @return an {@code OrderedParallelTransform}
+     */
+    public static <T, R> OrderedParallelTransform<T, R> on(Executor executor, Function<? super T, ? extends R> transform, int lookAhead) {
+        return new OrderedParallelTransform<>(transform, Schedulers.from(executor), lookAhead);
+    }
+
+    @Override
+    public Publisher<R> apply(Flowable<T> upstream) {
+        return upstream.concatMapEager(
+                el -> Flowable.<R>fromCallable(() -> transform.apply(el)).subscribeOn(scheduler),
+                lookAhead,
+                1);
+    }
+
+}
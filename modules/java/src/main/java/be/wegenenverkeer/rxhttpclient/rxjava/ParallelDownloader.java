@@ -0,0 +1,272 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.ServerResponseHeaders;
+import be.wegenenverkeer.rxhttpclient.ServerResponseStatus;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.SingleSubject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a resource into a file over several connections, by fetching byte ranges of the resource in parallel.
+ * <p>
+ * The first range is requested as a probe. When the server responds with a partial response (206), the length of the
+ * resource is taken from its {@code Content-Range} header, and the remaining ranges are requested concurrently, while
+ * the first one is still being received. When the server ignores the {@code Range} header (200), the whole body is
+ * written from the probe response. The ranges are written directly into the file at their offsets, with positional
+ * writes on a single {@code FileChannel}.
+ * <p>
+ * A range that fails with a server or I/O error is retried on its own, starting at the first byte that was not yet
+ * written. When the probe response has a strong {@code ETag}, the other ranges (and retries of the probe) are requested
+ * with {@code If-Match}, so that a resource that changes during the download fails the download instead of corrupting
+ * the file. The {@code Content-Range} of each partial response must start at the requested position. An empty
+ * resource, for which the server answers the probe with 416 (Range Not Satisfiable), results in an empty file.
+ */
+public class ParallelDownloader {
+
+    private static final Pattern EMPTY_CONTENT_RANGE = Pattern.compile("bytes\\s+\\*/0\\s*");
+
+    final private RxJavaHttpClient client;
+    final private int parallelism;
+    final private long rangeSize;
+    final private int maxRetries;
+
+    private ParallelDownloader(RxJavaHttpClient client, int parallelism, long rangeSize, int maxRetries) {
+        this.client = client;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns a builder for a downloader that uses the specified client.
+     *
+     * @param client the client that sends the requests
+     * @return a builder
+     */
+    public static Builder builder(RxJavaHttpClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Downloads the resource of the specified (GET) request into the target file. An existing file is overwritten.
+     *
+     * @param request the request for the resource
+     * @param target  the file to write
+     * @return a Single that emits the number of bytes in the file when the download is complete
+     */
+    public Single<Long> download(ClientRequest request, Path target) {
+        return Single.using(
+                () -> FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                channel -> download(request, channel),
+                FileChannel::close);
+    }
+
+    private Single<Long> download(ClientRequest request, FileChannel channel) {
+        return Single.defer(() -> {
+            SingleSubject<Long> length = SingleSubject.create();
+            AtomicReference<String> etag = new AtomicReference<>();
+            Completable probe = fetchRange(request, channel, 0, rangeSize - 1, length, etag)
+                    .onErrorResumeNext(e -> isRangeNotSatisfiable(e)
+                            ? probeEmptyResource(request, length, e)
+                            : Completable.error(e));
+            Completable rest = length.flatMapCompletable(total -> Flowable
+                    .rangeLong(1, total <= 0 ? 0 : (total - 1) / rangeSize)
+                    .flatMapCompletable(i -> {
+                        long start = i * rangeSize;
+                        return fetchRange(request, channel, start, Math.min(start + rangeSize, total) - 1, null, etag);
+                    }, false, Math.max(1, parallelism - 1)));
+            return Completable.mergeArray(probe, rest)
+                    .andThen(Single.fromCallable(channel::size));
+        });
+    }
+
+    /**
+     * Fetches the range [start, end] and writes it into the file. For the probe, the length of the resource (or -1 if
+     * the server does not support ranges) is signalled to {@code length}, and the ETag is stored in {@code etag}. Once
+     * the ETag is known, it is sent in an {@code If-Match} header.
+     */
+    private Completable fetchRange(ClientRequest request, FileChannel channel, long start, long end,
+                                   SingleSubject<Long> length, AtomicReference<String> etag) {
+        boolean isProbe = length != null;
+        AtomicLong position = new AtomicLong(start);
+        return Flowable.defer(() -> {
+                    ClientRequest rangeRequest = request.withHeader("Range", "bytes=" + position.get() + "-" + end);
+                    String tag = etag.get();
+                    return client.executeObservably(tag == null ? rangeRequest : rangeRequest.withHeader("If-Match", tag));
+                })
+                .observeOn(Schedulers.io())
+                .doOnNext(el -> el.match(
+                        status -> checkStatus(status, isProbe, start, position, length),
+                        headers -> {
+                            checkContentRange(headers, position);
+                            if (isProbe) {
+                                readProbeHeaders(headers, length, etag);
+                            }
+                            return null;
+                        },
+                        part -> write(channel, part.getBodyByteBuffer(), position),
+                        response -> write(channel, response.getResponseBodyAsByteBuffer(), position)))
+                .ignoreElements()
+                .retry(maxRetries, ParallelDownloader::isRetryable);
+    }
+
+    private static Void checkStatus(ServerResponseStatus status, boolean isProbe, long start, AtomicLong position,
+                                    SingleSubject<Long> length) {
+        if (status.getStatusCode() == 200 && isProbe) {
+            //the server ignores the Range header, so the whole body follows
+            position.set(start);
+            length.onSuccess(-1L);
+        } else if (status.getStatusCode() != 206) {
+            throw new IllegalStateException("Expected a partial response (206), but got status " + status.getStatusCode());
+        }
+        return null;
+    }
+
+    private static void checkContentRange(ServerResponseHeaders headers, AtomicLong position) {
+        headers.getHeader("Content-Range").ifPresent(value -> {
+            if (ContentRange.parse(value).start != position.get()) {
+                throw new IllegalStateException(String.format("Requested range from %d, but got %s", position.get(), value));
+            }
+        });
+    }
+
+    private static boolean isRangeNotSatisfiable(Throwable t) {
+        return t instanceof HttpClientError && ((HttpClientError) t).getStatusCode() == 416;
+    }
+
+    /**
+     * Handles a probe that was answered with 416 (Range Not Satisfiable). That is how servers answer a range request
+     * for an empty resource, with a {@code Content-Range} header that gives a length of 0. The streaming response does
+     * not keep the headers of error responses, so the probe is sent once more as a complete request to read them.
+     */
+    private Completable probeEmptyResource(ClientRequest request, SingleSubject<Long> length, Throwable probeError) {
+        return client.executeToCompletion(request.withHeader("Range", "bytes=0-" + (rangeSize - 1)), response -> response)
+                .ignoreElements()
+                .andThen(Completable.error(probeError))
+                .onErrorResumeNext(e -> {
+                    boolean isEmpty = e instanceof HttpClientError
+                            && ((HttpClientError) e).getResponse()
+                            .flatMap(response -> response.getHeader("Content-Range"))
+                            .filter(value -> EMPTY_CONTENT_RANGE.matcher(value).matches())
+                            .isPresent();
+                    if (isEmpty && !length.hasValue()) {
+                        length.onSuccess(0L);
+                        return Completable.complete();
+                    }
+                    return Completable.error(probeError);
+                });
+    }
+
+    private static void readProbeHeaders(ServerResponseHeaders headers, SingleSubject<Long> length, AtomicReference<String> etag) {
+        if (length.hasValue()) {
+            return;
+        }
+        headers.getHeader("ETag")
+                .filter(tag -> !tag.startsWith("W/"))
+                .ifPresent(etag::set);
+        String contentRange = headers.getHeader("Content-Range")
+                .orElseThrow(() -> new IllegalStateException("Partial response without Content-Range header"));
+        long total = ContentRange.parse(contentRange).length;
+        if (total < 0) {
+            throw new IllegalStateException("Can't determine resource length from Content-Range: " + contentRange);
+        }
+        length.onSuccess(total);
+    }
+
+    private static Void write(FileChannel channel, ByteBuffer buffer, AtomicLong position) {
+        long pos = position.get();
+        try {
+            while (buffer.hasRemaining()) {
+                pos += channel.write(buffer, pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position.set(pos);
+        return null;
+    }
+
+    /**
+     * Server errors and I/O errors are retried; client errors (4xx) and unexpected responses are not.
+     */
+    private static boolean isRetryable(Throwable t) {
+        return !(t instanceof HttpClientError) && !(t instanceof IllegalStateException);
+    }
+
+    /**
+     * A builder for {@code ParallelDownloader}s.
+     */
+    public static class Builder {
+
+        final private RxJavaHttpClient client;
+        private int parallelism = 4;
+        private long rangeSize = 8 * 1024 * 1024;
+        private int maxRetries = 3;
+
+        Builder(RxJavaHttpClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Sets the maximum number of ranges that are fetched concurrently (default 4). Note that the number of
+         * connections is also limited by the maximum number of connections of the client.
+         *
+         * @param parallelism the maximum number of concurrent range requests
+         * @return this {@code Builder}
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the size of the ranges (default 8 MB).
+         *
+         * @param rangeSize the range size in bytes
+         * @return this {@code Builder}
+         */
+        public Builder setRangeSize(long rangeSize) {
+            if (rangeSize <= 0) {
+                throw new IllegalArgumentException("Range size must be positive");
+            }
+            this.rangeSize = rangeSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of times a failed range is retried (default 3).
+         *
+         * @param maxRetries the maximum number of retries of each range
+         * @return this {@code Builder}
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Number of retries can't be negative");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public ParallelDownloader build() {
+            return new ParallelDownloader(client, parallelism, rangeSize, maxRetries);
+        }
+    }
+
+}
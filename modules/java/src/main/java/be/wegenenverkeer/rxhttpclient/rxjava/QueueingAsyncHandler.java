@@ -1,24 +1,44 @@
 package be.wegenenverkeer.rxhttpclient.rxjava;
 
 import be.wegenenverkeer.rxhttpclient.*;
+import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpHeaders;
-import io.reactivex.rxjava3.core.Emitter;
+import io.reactivex.rxjava3.operators.SimplePlainQueue;
+import io.reactivex.rxjava3.operators.SpscLinkedArrayQueue;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.net.InetSocketAddress;
 import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * An {@link AsyncHandler} that pushes the received response elements to a {@link Subscriber}.
+ * <p>
+ * The handler is also the {@link Subscription} of that subscriber. Received elements are put on a lock-free
+ * single-producer/single-consumer queue, and emitted by a work-in-progress drain loop on whichever thread produced the
+ * data or requested more. No thread is ever blocked waiting for data, so an idle stream costs no threads at all.
+ * <p>
+ * The handler never blocks the Netty I/O thread either. When the number of buffered body parts reaches the buffer
+ * size, reading from the channel is paused (auto-read is switched off). Reading is resumed when the subscriber has
+ * consumed half of the buffered body parts.
+ * <p>
+ * When the subscriber cancels before the response is complete, the {@link CancellationPolicy} decides whether the
+ * connection is closed immediately, or drained: the rest of the response is then read and discarded, so that the
+ * connection returns to the pool (see {@link ResponseCancellation}).
+ * <p>
  * Created by Karel Maesen, Geovise BVBA on 05/05/2020.
  */
-public class QueueingAsyncHandler implements AsyncHandler<Boolean> {
+public class QueueingAsyncHandler implements AsyncHandler<Boolean>, Subscription {
 
 
     final private static Logger logger = LoggerFactory.getLogger(QueueingAsyncHandler.class);
@@ -29,23 +49,104 @@ public class QueueingAsyncHandler implements AsyncHandler<Boolean> {
         }
     }
 
-    //TODO -- make the queue size configurable
-    final private BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(1024);
+    final private Subscriber<? super ServerResponseElement> downstream;
+
+    //only the channel's event loop offers to the queue, only the drain loop polls
+    final private SimplePlainQueue<ServerResponseElement> queue = new SpscLinkedArrayQueue<>(16);
+    final private AtomicInteger wip = new AtomicInteger();
+    final private AtomicLong requested = new AtomicLong();
+    //set as soon as the subscriber cancels: from then on, nothing is signalled downstream
+    final private AtomicBoolean cancelRequested = new AtomicBoolean(false);
+    //set once the cancellation policy has decided between aborting and draining: the I/O thread acts on it
     final AtomicBoolean isCancelled = new AtomicBoolean(false);
 
+    private volatile boolean done;
+    private Throwable error;
+
+    final private boolean retainBodyParts;
+    final private int highWaterMark;
+    final private int lowWaterMark;
+    final private AtomicInteger bufferedBodyParts = new AtomicInteger();
+
+    final private CancellationPolicy cancellationPolicy;
+    final private ResponseCancellation cancellation;
+    private volatile ListenableFuture<?> future;
+
+    //the channel is only set, and auto-read only toggled, on the channel's event loop
+    private volatile Channel channel;
+    private volatile boolean readingPaused = false;
+
+    public QueueingAsyncHandler(Subscriber<? super ServerResponseElement> downstream, int bufferSize) {
+        this(downstream, bufferSize, false);
+    }
+
+    /**
+     * Creates an instance
+     *
+     * @param downstream      the subscriber to the response elements
+     * @param bufferSize      the number of buffered body parts at which reading from the channel is paused
+     * @param retainBodyParts if true, body parts are emitted as {@link RetainedServerResponseBodyPart}s that the
+     *                        subscriber must release
+     */
+    public QueueingAsyncHandler(Subscriber<? super ServerResponseElement> downstream, int bufferSize, boolean retainBodyParts) {
+        this(downstream, bufferSize, retainBodyParts, CancellationPolicy.ABORT, new CancellationStats());
+    }
+
+    /**
+     * Creates an instance
+     *
+     * @param downstream         the subscriber to the response elements
+     * @param bufferSize         the number of buffered body parts at which reading from the channel is paused
+     * @param retainBodyParts    if true, body parts are emitted as {@link RetainedServerResponseBodyPart}s that the
+     *                           subscriber must release
+     * @param cancellationPolicy decides whether the connection is closed or drained when the subscriber cancels
+     * @param cancellationStats  the statistics in which the outcome of a cancellation is counted
+     */
+    public QueueingAsyncHandler(Subscriber<? super ServerResponseElement> downstream, int bufferSize, boolean retainBodyParts,
+                                CancellationPolicy cancellationPolicy, CancellationStats cancellationStats) {
+        this.downstream = downstream;
+        this.retainBodyParts = retainBodyParts;
+        this.highWaterMark = bufferSize;
+        this.lowWaterMark = bufferSize / 2;
+        this.cancellationPolicy = cancellationPolicy;
+        this.cancellation = new ResponseCancellation(cancellationStats);
+    }
+
+    /**
+     * Sets the future of the request, through which a cancelled request is aborted.
+     *
+     * @param future the future of the request that is handled
+     */
+    void setFuture(ListenableFuture<?> future) {
+        this.future = future;
+        if (isCancelled.get()) {
+            cancellation.cancel(future, cancellationPolicy);
+        }
+    }
+
+    @Override
+    public void onTcpConnectSuccess(InetSocketAddress remoteAddress, Channel connection) {
+        this.channel = connection;
+    }
+
+    @Override
+    public void onConnectionPooled(Channel connection) {
+        this.channel = connection;
+    }
+
     @Override
     public State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
         final int statuscode = responseStatus.getStatusCode();
 
         if (statuscode >= 400 && statuscode < 500) {
-            queue.put( new ErrorNotification(new HttpClientError(statuscode, null, responseStatus.getStatusText())));
+            terminate(new HttpClientError(statuscode, null, responseStatus.getStatusText()));
             return State.CONTINUE;
         } else if (statuscode >= 500) {
-            queue.put( new ErrorNotification(new HttpServerError(statuscode, null, responseStatus.getStatusText())));
+            terminate(new HttpServerError(statuscode, null, responseStatus.getStatusText()));
             return State.CONTINUE;
         }
 
-        queue.put( new NextNotification(new ServerResponseStatus() {
+        emit(new ServerResponseStatus() {
             @Override
             public int getStatusCode() {
                 return statuscode;
@@ -59,13 +160,14 @@ public class QueueingAsyncHandler implements AsyncHandler<Boolean> {
             public String toString() {
                 return String.format("Server response: %d", statuscode);
             }
-        }));
+        });
         return State.CONTINUE;
     }
 
     @Override
     public State onHeadersReceived(HttpHeaders headers) throws Exception {
-        queue.put(new NextNotification(new ServerResponseHeadersImpl(headers)));
+        cancellation.onHeaders(headers);
+        emit(new ServerResponseHeadersImpl(headers));
         return State.CONTINUE;
     }
 
@@ -73,134 +175,232 @@ public class QueueingAsyncHandler implements AsyncHandler<Boolean> {
     public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
 
         trace("Receiving body");
+        cancellation.onBodyPart(bodyPart);
         if(isCancelled.get()) {
-            trace("Aborting because cancelled");
+            if (!cancellation.isDraining() && cancellation.abortByHandler()) {
+                //the request is cancelled before its future is known
+                trace("Aborting because cancelled");
+                return State.ABORT;
+            }
+            if (cancellation.isDraining()) {
+                if (bodyPart.isLast()) {
+                    releaseChannel();
+                }
+                return State.CONTINUE;
+            }
+            //already aborted through the future
             return State.ABORT;
         }
+        if (done) {
+            //an error has already been signalled, the remainder of the body is discarded
+            return State.CONTINUE;
+        }
+        if (bodyPart.isLast()) {
+            //the channel is returned to the pool after this callback, so it must be readable again
+            releaseChannel();
+        } else if (bufferedBodyParts.incrementAndGet() >= highWaterMark) {
+            pauseReading();
+        }
         trace("Putting value");
-        queue.put(new NextNotification(new ServerResponseBodyPartImpl(bodyPart.getBodyPartBytes(), bodyPart.isLast())));
+        emit(retainBodyParts
+                ? RetainedServerResponseBodyPart.retain(bodyPart)
+                : new ServerResponseBodyPartImpl(bodyPart.getBodyPartBytes(), bodyPart.isLast()));
         return State.CONTINUE;
     }
 
     @Override
     public void onThrowable(Throwable t) {
-        try {
-            queue.put(new ErrorNotification(t));
-        } catch (InterruptedException e) {
-            logger.error("Interrupt exception when trying to enqueue throwable", t);
-        }
+        cancellation.onThrowable();
+        releaseChannel();
+        terminate(t);
     }
 
     @Override
     public Boolean onCompleted() throws Exception {
-        queue.put(new CompletionNotification());
+        cancellation.onCompleted();
+        releaseChannel();
+        terminate(null);
         return true;
     }
 
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            RxJavaPlugins.onError(new IllegalArgumentException("n > 0 required but it was " + n));
+            return;
+        }
+        long r, u;
+        do {
+            r = requested.get();
+            u = r + n;
+            if (u < 0) {
+                u = Long.MAX_VALUE;
+            }
+        } while (!requested.compareAndSet(r, u));
+        drain();
+    }
+
+    @Override
     public void cancel(){
         trace("Cancel() invoked");
+        if (!cancelRequested.compareAndSet(false, true)) {
+            return;
+        }
+        //aborting the future calls onThrowable on this thread; the drain loop no longer signals that error downstream
+        ListenableFuture<?> f = future;
+        if (f != null) {
+            cancellation.cancel(f, cancellationPolicy);
+        }
+        //the choice between aborting and draining is made before the cancellation is visible to the I/O thread
         isCancelled.set(true);
-        //we need to drain the queue so that the thread from the RxHttpClient is no longer blocked in case the
-        //queue has already filled to capacity.
-        drainQueue();
+        //resume reading so that the rest of the response is drained, or the next received body part aborts the request.
+        resumeReading();
+        drain();
     }
 
-    private void drainQueue() {
-        queue.drainTo(new ArrayList<>());
+    private void emit(ServerResponseElement element) {
+        if (done || cancelRequested.get()) {
+            release(element);
+            return;
+        }
+        queue.offer(element);
+        //cancel() may have run between the check above and the offer. The drain loop then sees the cancelled flag and
+        //releases the element, instead of leaving it (and its retained buffer) in the queue.
+        drain();
     }
 
-    public void emitTo(Emitter<ServerResponseElement> emitter){
+    private void terminate(Throwable t) {
+        if (done) {
+            return;
+        }
+        error = t;
+        done = true;
+        drain();
+    }
 
-        try {
-            Notification n = queue.take();
-            trace("Emitting next notification");
-            if(n.isNext()){
-                emitter.onNext(((NextNotification)n).element);
-                return;
-            }
-            if (n.isCompletion()){
-                emitter.onComplete();
+    private void clearQueue() {
+        if (retainBodyParts) {
+            ServerResponseElement el;
+            while ((el = queue.poll()) != null) {
+                release(el);
             }
-            if(n.isError()){
-                emitter.onError( ((ErrorNotification)n).error);
-            }
-        } catch (InterruptedException e) {
-            emitter.onError(e);
+        } else {
+            queue.clear();
         }
+        bufferedBodyParts.set(0);
     }
 
-    static abstract class Notification{
-        abstract boolean isError();
-        abstract boolean isCompletion();
-        abstract boolean isNext();
+    private static void release(ServerResponseElement element) {
+        if (element instanceof RetainedServerResponseBodyPart) {
+            ((RetainedServerResponseBodyPart) element).release();
+        }
     }
 
-
-
-    static class ErrorNotification extends Notification {
-
-        final Throwable error;
-
-        ErrorNotification(Throwable t){
-            error=t;
+    /**
+     * Emits the queued elements for as far as there is demand. Only one thread at a time runs the loop; a thread that
+     * finds the loop taken by another thread only signals that there is more work. Once cancelled, the loop releases
+     * whatever is queued, so it is the only place where the queue is polled.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
         }
+        int missed = 1;
+        for (; ; ) {
+            long r = requested.get();
+            long e = 0L;
+
+            while (e != r) {
+                if (cancelRequested.get()) {
+                    break;
+                }
+                boolean d = done;
+                ServerResponseElement el = queue.poll();
+                boolean empty = el == null;
+                if (d && empty) {
+                    emitTerminal();
+                    return;
+                }
+                if (empty) {
+                    break;
+                }
+                trace("Emitting next element");
+                downstream.onNext(el);
+                e++;
+                if (el instanceof ServerResponseBodyPart && !((ServerResponseBodyPart) el).isLast()
+                        && bufferedBodyParts.decrementAndGet() <= lowWaterMark) {
+                    resumeReading();
+                }
+            }
 
-        @Override
-        public boolean isError() {
-            return true;
-        }
+            if (cancelRequested.get()) {
+                //keep looping on missed work: elements offered after the cancellation are released here as well
+                clearQueue();
+            } else if (e == r && done && queue.isEmpty()) {
+                emitTerminal();
+                return;
+            }
 
-        @Override
-        public boolean isCompletion() {
-            return false;
-        }
+            if (e != 0L && r != Long.MAX_VALUE) {
+                requested.addAndGet(-e);
+            }
 
-        @Override
-        public boolean isNext() {
-            return false;
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
         }
-
     }
 
-    static class NextNotification extends Notification{
-
-        final ServerResponseElement element;
-
-        public NextNotification(ServerResponseElement element) {
-            this.element = element;
-        }
-
-        @Override
-        boolean isError() {
-            return false;
-        }
-
-        @Override
-        boolean isCompletion() {
-            return false;
-        }
-
-        @Override
-        boolean isNext() {
-            return true;
+    private void emitTerminal() {
+        Throwable t = error;
+        if (t != null) {
+            downstream.onError(t);
+        } else {
+            downstream.onComplete();
         }
     }
 
-    static class CompletionNotification extends Notification{
-
-        @Override
-        boolean isError() {
-            return false;
+    /**
+     * Switches auto-read off. Only invoked on the channel's event loop.
+     */
+    private void pauseReading() {
+        Channel ch = channel;
+        if (ch != null && !readingPaused) {
+            trace("Pausing reads");
+            readingPaused = true;
+            ch.config().setAutoRead(false);
         }
+    }
 
-        @Override
-        boolean isCompletion() {
-            return true;
+    /**
+     * Switches auto-read back on. The switch is done on the event loop, and only when the channel is still owned
+     * by this handler, so that we never interfere with a later request on the same (pooled) channel.
+     */
+    private void resumeReading() {
+        Channel ch = channel;
+        if (ch != null && readingPaused) {
+            ch.eventLoop().execute(() -> {
+                if (channel == ch && readingPaused) {
+                    trace("Resuming reads");
+                    readingPaused = false;
+                    ch.config().setAutoRead(true);
+                }
+            });
         }
+    }
 
-        @Override
-        boolean isNext() {
-            return false;
+    /**
+     * Restores auto-read and gives up ownership of the channel. Only invoked on the channel's event loop, except
+     * on timeout or abort (in which case the channel is closed anyway).
+     */
+    private void releaseChannel() {
+        Channel ch = channel;
+        channel = null;
+        if (ch != null && readingPaused) {
+            readingPaused = false;
+            ch.config().setAutoRead(true);
         }
     }
+
 }
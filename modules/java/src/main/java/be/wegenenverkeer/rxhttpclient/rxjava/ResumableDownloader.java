@@ -0,0 +1,339 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.ServerResponseHeaders;
+import be.wegenenverkeer.rxhttpclient.ServerResponseStatus;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a resource into a file, and resumes the download where it left off after a failure.
+ * <p>
+ * While the body is written, the number of bytes that are safely on disk is recorded periodically in a checkpoint
+ * file next to the target (the target file name with the suffix {@code .checkpoint}), together with the URL and the
+ * validator of the resource (its strong {@code ETag}, or else its {@code Last-Modified} date). The checkpoint is a
+ * properties file with the keys {@code url}, {@code validator} and {@code bytes}.
+ * <p>
+ * When the connection fails, the request is sent again (after a delay) with a {@code Range} header that starts at the
+ * first missing byte and an {@code If-Range} header with the validator. If the resource has not changed, the server
+ * sends the rest of the body; if it has changed, the server sends the whole new body and the download restarts from
+ * zero. A download that gives up also leaves a checkpoint, so that the next download of the same resource into the
+ * same file resumes from there. The checkpoint is deleted when the download is complete.
+ * <p>
+ * Resources without a validator can't be resumed safely, so their downloads always restart from zero.
+ */
+public class ResumableDownloader {
+
+    final private static Logger logger = LoggerFactory.getLogger(ResumableDownloader.class);
+
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    final private RxJavaHttpClient client;
+    final private int maxRetries;
+    final private long retryDelayMillis;
+    final private long checkpointInterval;
+
+    private ResumableDownloader(RxJavaHttpClient client, int maxRetries, long retryDelayMillis, long checkpointInterval) {
+        this.client = client;
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Returns a builder for a downloader that uses the specified client.
+     *
+     * @param client the client that sends the requests
+     * @return a builder
+     */
+    public static Builder builder(RxJavaHttpClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Returns the path of the checkpoint file for the specified target.
+     *
+     * @param target the file to which the resource is downloaded
+     * @return the path of the checkpoint file
+     */
+    public static Path checkpointPath(Path target) {
+        return target.resolveSibling(target.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Downloads the resource of the specified (GET) request into the target file, resuming a previous download of the
+     * same resource if the target has a checkpoint.
+     *
+     * @param request the request for the resource
+     * @param target  the file to write
+     * @return a Single that emits the number of bytes in the file when the download is complete
+     */
+    public Single<Long> download(ClientRequest request, Path target) {
+        return Single.using(
+                () -> FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                channel -> Single.defer(() -> {
+                    Download download = new Download(request, channel, checkpointPath(target));
+                    download.restore();
+                    return Flowable.defer(() -> client.executeObservably(download.nextRequest()))
+                            .observeOn(Schedulers.io())
+                            .doOnNext(el -> el.match(
+                                    download::onStatus,
+                                    download::onHeaders,
+                                    part -> download.write(part.getBodyByteBuffer()),
+                                    response -> download.write(response.getResponseBodyAsByteBuffer())))
+                            .ignoreElements()
+                            .retryWhen(errors -> retries(errors, download))
+                            .doOnError(e -> download.checkpointQuietly())
+                            .andThen(Single.fromCallable(download::complete));
+                }),
+                FileChannel::close);
+    }
+
+    /**
+     * Retries after a delay, unless the error is not retryable or the maximum number of consecutive failures without
+     * progress is reached.
+     */
+    private Flowable<Long> retries(Flowable<Throwable> errors, Download download) {
+        AtomicInteger failures = new AtomicInteger();
+        long[] positionAtLastFailure = {-1};
+        return errors.flatMap(e -> {
+            if (download.position > positionAtLastFailure[0]) {
+                failures.set(0);
+            }
+            positionAtLastFailure[0] = download.position;
+            if (!isRetryable(e) || failures.incrementAndGet() > maxRetries) {
+                return Flowable.error(e);
+            }
+            logger.info("Download of {} failed at byte {}, resuming", download.url, download.position, e);
+            return Flowable.timer(retryDelayMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private static boolean isRetryable(Throwable t) {
+        return !(t instanceof HttpClientError) && !(t instanceof IllegalStateException);
+    }
+
+    /**
+     * The state of a single download.
+     */
+    private final class Download {
+        final ClientRequest request;
+        final FileChannel channel;
+        final Path checkpointFile;
+        final String url;
+
+        //the number of bytes written, and the number of bytes in the last checkpoint
+        volatile long position = 0;
+        volatile long persisted = 0;
+        volatile String validator;
+
+        Download(ClientRequest request, FileChannel channel, Path checkpointFile) {
+            this.request = request;
+            this.channel = channel;
+            this.checkpointFile = checkpointFile;
+            this.url = request.getUrl();
+        }
+
+        /**
+         * Continues from the checkpoint, if it is for the same resource.
+         */
+        void restore() throws IOException {
+            Optional<Properties> checkpoint = readCheckpoint();
+            if (checkpoint.isPresent() && url.equals(checkpoint.get().getProperty("url"))) {
+                long bytes = Long.parseLong(checkpoint.get().getProperty("bytes", "0"));
+                if (bytes <= channel.size()) {
+                    position = persisted = bytes;
+                    validator = checkpoint.get().getProperty("validator");
+                }
+            }
+            channel.truncate(position);
+        }
+
+        ClientRequest nextRequest() throws IOException {
+            if (position == 0) {
+                return request;
+            }
+            if (validator == null) {
+                restart();
+                return request;
+            }
+            return request.withHeader("Range", "bytes=" + position + "-")
+                    .withHeader("If-Range", validator);
+        }
+
+        Void onStatus(ServerResponseStatus status) {
+            if (status.getStatusCode() != 206 && position > 0) {
+                //the resource has changed (or the server ignores ranges), so the whole body follows
+                logger.info("Restarting download of {}: resource has changed", url);
+                try {
+                    restart();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return null;
+        }
+
+        Void onHeaders(ServerResponseHeaders headers) {
+            headers.getHeader("Content-Range").ifPresent(value -> {
+                if (ContentRange.parse(value).start != position) {
+                    throw new IllegalStateException(String.format("Requested range from %d, but got %s", position, value));
+                }
+            });
+            validator = headers.getHeader("ETag")
+                    .filter(tag -> !tag.startsWith("W/"))
+                    .orElse(headers.getHeader("Last-Modified").orElse(null));
+            return null;
+        }
+
+        Void write(ByteBuffer buffer) {
+            try {
+                long pos = position;
+                while (buffer.hasRemaining()) {
+                    pos += channel.write(buffer, pos);
+                }
+                position = pos;
+                if (position - persisted >= checkpointInterval) {
+                    checkpoint();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        long complete() throws IOException {
+            channel.force(false);
+            Files.deleteIfExists(checkpointFile);
+            return position;
+        }
+
+        private void restart() throws IOException {
+            position = persisted = 0;
+            channel.truncate(0);
+            Files.deleteIfExists(checkpointFile);
+        }
+
+        /**
+         * Forces the written bytes to disk, and then records them in the checkpoint file.
+         */
+        private void checkpoint() throws IOException {
+            if (validator == null) {
+                return;
+            }
+            channel.force(false);
+            Properties checkpoint = new Properties();
+            checkpoint.setProperty("url", url);
+            checkpoint.setProperty("validator", validator);
+            checkpoint.setProperty("bytes", Long.toString(position));
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                checkpoint.store(out, null);
+            }
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persisted = position;
+        }
+
+        void checkpointQuietly() {
+            try {
+                checkpoint();
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to write checkpoint " + checkpointFile, e);
+            }
+        }
+
+        private Optional<Properties> readCheckpoint() {
+            if (!Files.exists(checkpointFile)) {
+                return Optional.empty();
+            }
+            try (InputStream in = Files.newInputStream(checkpointFile)) {
+                Properties checkpoint = new Properties();
+                checkpoint.load(in);
+                return Optional.of(checkpoint);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Ignoring unreadable checkpoint " + checkpointFile, e);
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * A builder for {@code ResumableDownloader}s.
+     */
+    public static class Builder {
+
+        final private RxJavaHttpClient client;
+        private int maxRetries = 5;
+        private long retryDelayMillis = 1000;
+        private long checkpointInterval = 8 * 1024 * 1024;
+
+        Builder(RxJavaHttpClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Sets the maximum number of consecutive failed attempts without progress (default 5). The count is reset
+         * whenever an attempt has written bytes.
+         *
+         * @param maxRetries the maximum number of retries
+         * @return this {@code Builder}
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Number of retries can't be negative");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the delay before a failed download is resumed (default 1 second).
+         *
+         * @param delay the delay
+         * @param unit  the time unit of the delay
+         * @return this {@code Builder}
+         */
+        public Builder setRetryDelay(long delay, TimeUnit unit) {
+            this.retryDelayMillis = unit.toMillis(delay);
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes that are written between checkpoints (default 8 MB).
+         *
+         * @param checkpointInterval the number of bytes between checkpoints
+         * @return this {@code Builder}
+         */
+        public Builder setCheckpointInterval(long checkpointInterval) {
+            if (checkpointInterval <= 0) {
+                throw new IllegalArgumentException("Checkpoint interval must be positive");
+            }
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public ResumableDownloader build() {
+            return new ResumableDownloader(client, maxRetries, retryDelayMillis, checkpointInterval);
+        }
+    }
+
+}
@@ -3,14 +3,35 @@ package be.wegenenverkeer.rxhttpclient.rxjava;
 import be.wegenenverkeer.rxhttpclient.*;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.processors.AsyncProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CompletableFuture;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 /**
@@ -21,26 +42,15 @@ public class RxJavaHttpClient extends BaseRxHttpClient implements RxHttpClient {
 
     final private static Logger logger = LoggerFactory.getLogger(RxHttpClient.class);
     final private static Charset UTF8 = StandardCharsets.UTF_8;
+    final private static long DEFAULT_RECONNECTION_TIME = 3000;
+    final private static int MAX_REMEMBERED_EVENT_IDS = 1024;
+    final private static int FILE_WRITE_BUFFER_SIZE = 16;
 
 
     protected RxJavaHttpClient(AsyncHttpClient innerClient, RestClientConfig config, ClientRequestLogFormatter logFmt, RequestSigner... requestSigners) {
         super(innerClient, config, logFmt, requestSigners);
     }
 
-    /**
-     * * Executes a request and returns an Observable for the complete response.
-     */
-    public <F> CompletableFuture<F> execute(ClientRequest request, Function<ServerResponse, F> transformer) {
-        logger.info("Sending Request: " + toLogMessage(request));
-        //Note: we don't use Observable.toBlocking().toFuture()
-        //because we need a CompletableFuture so that interop with Scala is possible
-        final CompletableFuture<F> future = new CompletableFuture<>();
-
-        return inner().executeRequest(request.unwrap()).toCompletableFuture()
-                .thenApply(ServerResponse::wrap)
-                .thenApply(transformer);
-    }
-
     /**
      * Executes a request and returns an Observable for the complete response.
      * <p>
@@ -54,37 +64,102 @@ public class RxJavaHttpClient extends BaseRxHttpClient implements RxHttpClient {
      * @return An Observable that returns the transformed server response.
      */
     public <F> Flowable<F> executeToCompletion(ClientRequest request, Function<ServerResponse, F> transformer) {
+        return executeToCompletion(request, transformer, getTransformerExecutor());
+    }
+
+    /**
+     * Executes a request and returns an Observable for the complete response. The transformer runs on the specified
+     * Scheduler, instead of the transformer executor of this client.
+     *
+     * @param request     the request to send
+     * @param transformer a function that transforms the {@link ServerResponse} to a value of F
+     * @param scheduler   the Scheduler that runs the transformer
+     * @param <F>         the type of return value
+     * @return An Observable that returns the transformed server response.
+     * @see be.wegenenverkeer.rxhttpclient.Builder#setTransformerExecutor(Executor)
+     */
+    public <F> Flowable<F> executeToCompletion(ClientRequest request, Function<ServerResponse, F> transformer, Scheduler scheduler) {
+        return executeToCompletion(request, transformer, (Executor) scheduler::scheduleDirect);
+    }
+
+    private <F> Flowable<F> executeToCompletion(ClientRequest request, Function<ServerResponse, F> transformer, Executor executor) {
         return Flowable.defer(() -> {
             logger.info("Sending Request: " + toLogMessage(request));
             AsyncProcessor<F> subject = AsyncProcessor.create();
-            inner().executeRequest(request.unwrap(), new AsyncCompletionHandlerWrapper<>(subject, transformer));
-            return subject;
+            ListenableFuture<?> response;
+            ResponseCancellation cancellation;
+            if (getConfig().isAggregatingResponses()) {
+                AggregatingCompletionHandlerWrapper<F> handler = new AggregatingCompletionHandlerWrapper<>(subject, transformer, executor, getConfig());
+                response = inner().executeRequest(request.unwrap(), handler);
+                cancellation = handler.getCancellation();
+            } else {
+                AsyncCompletionHandlerWrapper<F> handler = new AsyncCompletionHandlerWrapper<>(subject, transformer, executor, getConfig().getCancellationStats());
+                response = inner().executeRequest(request.unwrap(), handler);
+                cancellation = handler.getCancellation();
+            }
+            return subject.doOnCancel(() -> cancellation.cancel(response, getConfig().getCancellationPolicy()));
         });
     }
 
+    /**
+     * Executes a request and returns an Observable for the response body, read as a JSON value of the specified type.
+     *
+     * @param request the request to send
+     * @param type    the type of the value
+     * @param <T>     the type of the value
+     * @return An Observable that returns the value
+     * @see JsonResponseReader
+     */
+    public <T> Flowable<T> executeToCompletion(ClientRequest request, Class<T> type) {
+        return executeToCompletion(request, getConfig().getJsonResponseReader().forType(type));
+    }
+
     /**
      * Returns a "cold" Observable for a stream of {@link ServerResponseElement}s.
      * <p>
      * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
      * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     * <p>
+     * The response elements are pushed to the subscriber from the thread that received them, so no thread is blocked
+     * waiting for the response. The response is back-pressured: when the subscriber doesn't keep up, reading from the
+     * connection is paused until the subscriber requests more elements (see {@link be.wegenenverkeer.rxhttpclient.Builder#setStreamBufferSize(int)}).
      *
      * @param request the request to send
      * @return a cold observable of ServerResponseElements
      * @see Observable#defer
      */
     public Flowable<ServerResponseElement> executeObservably(ClientRequest request) {
-        return Flowable.generate(
-                () -> {
-                    QueueingAsyncHandler handler = new QueueingAsyncHandler();
-                    inner().executeRequest(request.unwrap(), handler);
-                    return handler;
-                },
-                (handler, emitter) -> {
-                    handler.emitTo(emitter);
-                    return handler;
-                },
-                QueueingAsyncHandler::cancel
-        );
+        return executeObservably(request, false);
+    }
+
+    /**
+     * Returns a "cold" Observable for a stream of {@link ServerResponseElement}s in which the body parts are
+     * {@link RetainedServerResponseBodyPart}s.
+     * <p>
+     * When the client is built with {@link be.wegenenverkeer.rxhttpclient.Builder#setLazyResponseBodyParts(boolean)},
+     * the body parts are read-only views of the Netty buffers in which the response was received, so the response body
+     * is never copied. The subscriber must release each body part when it no longer needs its bytes. Body parts that are
+     * still buffered when the subscription is cancelled are released by the client.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request the request to send
+     * @return a cold observable of ServerResponseElements
+     */
+    public Flowable<ServerResponseElement> executeObservablyRetained(ClientRequest request) {
+        return executeObservably(request, true);
+    }
+
+    private Flowable<ServerResponseElement> executeObservably(ClientRequest request, boolean retainBodyParts) {
+        return Flowable.fromPublisher(subscriber -> {
+            QueueingAsyncHandler handler = new QueueingAsyncHandler(subscriber, getConfig().getStreamBufferSize(), retainBodyParts,
+                    getConfig().getCancellationPolicy(), getConfig().getCancellationStats());
+            subscriber.onSubscribe(handler);
+            if (!handler.isCancelled.get()) {
+                handler.setFuture(inner().executeRequest(request.unwrap(), handler));
+            }
+        });
     }
 
     /**
@@ -97,7 +172,7 @@ public class RxJavaHttpClient extends BaseRxHttpClient implements RxHttpClient {
      * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
      *
      * @param request   the request to send
-     * @param separator the separator
+     * @param separator the separator, as a regular expression
      * @return a cold Flowable of messages (UTF8 Strings)
      */
     public Flowable<String> executeAndDechunk(ClientRequest request, String separator) {
@@ -110,21 +185,234 @@ public class RxJavaHttpClient extends BaseRxHttpClient implements RxHttpClient {
      * All <code>ServerResponseElement</code>s are filtered out, <code>ResponseBodyPart</code>s are turned into <code>String</code>s in
      * the specified charset, and the chunks are combined and split at the separator characters.
      * <p>
+     * The separator is interpreted as a regular expression (see {@link Dechunker}). For a literal separator, prefer
+     * {@link #executeAndDechunkLiteral(ClientRequest, String, Charset)}, which splits the raw bytes.
+     * <p>
      * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
      * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
      *
      * @param request   the request to send
-     * @param separator the separator
+     * @param separator the separator, as a regular expression
      * @param charset   the character set of the messages
      * @return a cold Flowable of messages (Strings in the specified Charset)
      */
     public Flowable<String> executeAndDechunk(ClientRequest request, String separator, Charset charset) {
-        return executeObservably(request)
-                .filter(sre -> sre instanceof ServerResponseBodyPart)
-                .map(sre -> new String(((ServerResponseBodyPart) sre).getBodyPartBytes(), charset))
+        return executeObservably(request, Function.identity())
+                .compose(StreamingCharsetDecoder.transformer(charset))
                 .lift(new Dechunker(separator));
     }
 
+    /**
+     * Returns a "cold" Observable for a stream of messages, separated by a literal separator.
+     * <p>
+     * Same as {@link #executeAndDechunkLiteral(ClientRequest, String, Charset)} for UTF-8 messages.
+     *
+     * @param request   the request to send
+     * @param separator the separator, matched literally
+     * @return a cold Flowable of messages (UTF8 Strings)
+     */
+    public Flowable<String> executeAndDechunkLiteral(ClientRequest request, String separator) {
+        return executeAndDechunkLiteral(request, separator, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a "cold" Observable for a stream of messages, separated by a literal separator.
+     * <p>
+     * All <code>ServerResponseElement</code>s are filtered out, the bytes of the <code>ResponseBodyPart</code>s are combined
+     * and split at the separator (encoded in the specified charset), and the complete messages are turned into
+     * <code>String</code>s in the specified charset.
+     * <p>
+     * Unlike {@link #executeAndDechunk(ClientRequest, String, Charset)}, the separator is matched literally (it is not
+     * a regular expression). Empty messages are skipped.
+     * <p>
+     * Messages are decoded with one {@link StreamingCharsetDecoder} per subscription. For charsets in which a separator
+     * cannot match in the middle of a character (UTF-8 and single-byte charsets), the bytes are split before they are
+     * decoded. For other charsets (e.g. UTF-16), the body is decoded first, carrying incomplete characters across body
+     * parts, and then split.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request   the request to send
+     * @param separator the separator, matched literally
+     * @param charset   the character set of the messages
+     * @return a cold Flowable of messages (Strings in the specified Charset)
+     * @see ByteDechunker
+     */
+    public Flowable<String> executeAndDechunkLiteral(ClientRequest request, String separator, Charset charset) {
+        if (isSelfSynchronizing(charset)) {
+            return Flowable.defer(() -> {
+                StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(charset);
+                return executeAndDechunk(request, separator.getBytes(charset))
+                        .map(decoder::decodeMessage);
+            });
+        }
+        return executeObservably(request, Function.identity())
+                .compose(StreamingCharsetDecoder.transformer(charset))
+                .lift(Dechunker.literal(separator));
+    }
+
+    private static boolean isSelfSynchronizing(Charset charset) {
+        return StreamingCharsetDecoder.isAsciiCompatible(charset)
+                || (charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1.0f);
+    }
+
+    /**
+     * Returns a "cold" Observable for a stream of messages as byte arrays.
+     * <p>
+     * All <code>ServerResponseElement</code>s are filtered out, the bytes of the <code>ResponseBodyPart</code>s are combined
+     * and split at the separator bytes. The separator is matched literally, and empty messages are skipped.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request   the request to send
+     * @param separator the separator bytes
+     * @return a cold Flowable of messages
+     * @see ByteDechunker
+     */
+    public Flowable<byte[]> executeAndDechunk(ClientRequest request, byte[] separator) {
+        return executeObservably(request, Function.identity())
+                .compose(new ByteDechunker(separator));
+    }
+
+
+    /**
+     * Returns a "cold" Observable for a stream of JSON values of the specified type.
+     * <p>
+     * If the response body is a JSON array, its elements are emitted, otherwise each top-level value is emitted (e.g. for
+     * newline-delimited JSON). Values are parsed incrementally as the body parts are received, and are emitted as soon
+     * as they are complete. The values are read with the {@code ObjectMapper} of this client (see
+     * {@link Builder#setObjectMapper(com.fasterxml.jackson.databind.ObjectMapper)}); to read them with another
+     * {@code ObjectReader}, compose {@link #executeObservably(ClientRequest, Function)} with a {@link JsonStreamParser}.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request the request to send
+     * @param type    the type of the values
+     * @param <T>     the type of the values
+     * @return a cold Flowable of values
+     * @see JsonStreamParser
+     */
+    public <T> Flowable<T> executeJsonStream(ClientRequest request, Class<T> type) {
+        return executeObservably(request, Function.identity())
+                .compose(new JsonStreamParser<>(getConfig().getJsonResponseReader().readerFor(type)));
+    }
+
+    /**
+     * Returns a "cold" Observable for the events of a {@code text/event-stream} (Server-Sent Events) response.
+     * <p>
+     * When the connection is closed or fails, the request is sent again after the reconnection time (3 seconds, unless
+     * the server sets another time with a {@code retry} field), with the last received event id in the
+     * {@code Last-Event-ID} header. Only I/O errors and timeouts lead to a reconnect. Events with an id that was already
+     * received are not emitted again. The stream completes when the server responds with status 204 (No Content), and
+     * fails on HTTP errors, on a response that is not a {@code text/event-stream}, and on any other error.
+     * <p>
+     * The {@code Accept} header of the request is set to {@code text/event-stream}, unless it already contains that
+     * media type.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request the request to send
+     * @return a cold Flowable of events
+     * @see ServerSentEventDecoder
+     */
+    public Flowable<ServerSentEvent> executeEventStream(ClientRequest request) {
+        return executeEventStream(request, DEFAULT_RECONNECTION_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a "cold" Observable for the events of a {@code text/event-stream} (Server-Sent Events) response, with
+     * the specified initial reconnection time.
+     *
+     * @param request          the request to send
+     * @param reconnectionTime the time to wait before reconnecting, unless the server sets another time
+     * @param unit             the time unit of the reconnection time
+     * @return a cold Flowable of events
+     * @see #executeEventStream(ClientRequest)
+     */
+    public Flowable<ServerSentEvent> executeEventStream(ClientRequest request, long reconnectionTime, TimeUnit unit) {
+        //the request builder always sets an Accept header (application/json by default), so it is replaced unless it
+        //already accepts event streams
+        ClientRequest eventStreamRequest = request.unwrap().getHeaders().getAll("Accept").stream()
+                .anyMatch(accept -> accept.contains("text/event-stream"))
+                ? request
+                : request.withHeader("Accept", "text/event-stream");
+        long defaultMillis = unit.toMillis(reconnectionTime);
+        return Flowable.defer(() -> {
+            ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+            Set<String> seenIds = recentIds();
+            AtomicBoolean closed = new AtomicBoolean(false);
+            return Flowable.defer(() -> {
+                        decoder.reset();
+                        return executeObservably(decoder.getLastEventId()
+                                .map(id -> eventStreamRequest.withHeader("Last-Event-ID", id))
+                                .orElse(eventStreamRequest));
+                    })
+                    .concatMapIterable(el -> el.match(
+                            status -> {
+                                if (status.getStatusCode() == 204) {
+                                    closed.set(true);
+                                }
+                                return Collections.<ServerSentEvent>emptyList();
+                            },
+                            headers -> {
+                                if (!closed.get()) {
+                                    checkEventStream(headers.getContentType());
+                                }
+                                return Collections.<ServerSentEvent>emptyList();
+                            },
+                            bodyPart -> decoder.decode(bodyPart.getBodyPartBytes()),
+                            response -> {
+                                checkEventStream(response.getContentType());
+                                return decoder.decode(response.getResponseBodyAsBytes());
+                            }))
+                    .onErrorResumeNext(t -> isConnectionError(t) ? Flowable.empty() : Flowable.error(t))
+                    .repeatWhen(reconnects -> reconnects
+                            .takeWhile(o -> !closed.get())
+                            .concatMap(o -> Flowable.timer(
+                                    decoder.getReconnectionTime().orElse(defaultMillis), TimeUnit.MILLISECONDS)))
+                    .filter(event -> event.getId().filter(id -> !id.isEmpty()).map(seenIds::add).orElse(true));
+        });
+    }
+
+    /**
+     * Fails the event stream if the response is not a {@code text/event-stream}, as the Server-Sent Events
+     * specification requires.
+     */
+    private static void checkEventStream(Optional<String> contentType) {
+        boolean isEventStream = contentType
+                .map(type -> type.split(";", 2)[0].trim())
+                .filter("text/event-stream"::equalsIgnoreCase)
+                .isPresent();
+        if (!isEventStream) {
+            throw new IllegalStateException("Expected a text/event-stream response, but got Content-Type: "
+                    + contentType.orElse("(none)"));
+        }
+    }
+
+    /**
+     * Returns true if the error is a connection failure after which the event stream reconnects, as opposed to an
+     * HTTP error or a failure to handle the response.
+     */
+    private static boolean isConnectionError(Throwable t) {
+        return t instanceof IOException || t instanceof TimeoutException;
+    }
+
+    /**
+     * Returns a set that only remembers the most recently added ids.
+     */
+    private static Set<String> recentIds() {
+        return Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_REMEMBERED_EVENT_IDS;
+            }
+        });
+    }
+
 
     /**
      * Returns a "cold" Observable for a stream of {@code T}.
@@ -149,6 +437,205 @@ public class RxJavaHttpClient extends BaseRxHttpClient implements RxHttpClient {
     }
 
 
+    /**
+     * Returns a "cold" Observable for a stream of {@code T}, in which the response body parts are coalesced in batches
+     * before they are transformed.
+     * <p>
+     * This reduces the number of invocations of the transform function (and the per-element overhead) when the response
+     * is received in many small fragments.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request   the request to send
+     * @param transform the function that transforms the batches of response body bytes into objects of type F
+     * @param coalescer the operator that determines the batches
+     * @param <F>       return type of the transform
+     * @return a cold observable of ServerResponseElements
+     */
+    public <F> Flowable<F> executeObservably(ClientRequest request, Function<byte[], F> transform, ChunkCoalescer coalescer) {
+        return executeObservably(request, Function.identity())
+                .lift(coalescer)
+                .map(transform::apply);
+    }
+
+    /**
+     * Returns a "cold" Observable for a stream of {@code T}, in which the response body (chunks) are transformed in
+     * parallel on the specified scheduler.
+     * <p>
+     * The results are emitted in the order of the response body chunks. At most {@code lookAhead} chunks are
+     * transformed ahead of the result that is emitted next.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request   the request to send
+     * @param transform the (thread-safe) function that transforms the response body (chunks) into objects of type F
+     * @param scheduler the scheduler on which the transform function is run
+     * @param lookAhead the maximum number of chunks that are transformed concurrently
+     * @param <F>       return type of the transform
+     * @return a cold observable of transformed response body chunks
+     * @see OrderedParallelTransform
+     */
+    public <F> Flowable<F> executeObservably(ClientRequest request, Function<byte[], F> transform, Scheduler scheduler, int lookAhead) {
+        return executeObservably(request, Function.identity())
+                .compose(new OrderedParallelTransform<byte[], F>(transform, scheduler, lookAhead));
+    }
+
+    /**
+     * Returns a "cold" Observable for a stream of messages, that are transformed in parallel on the specified scheduler.
+     * <p>
+     * The response body is split at the separator into (UTF8) messages, as in
+     * {@link #executeAndDechunk(ClientRequest, String)}. The results are emitted in the order of the messages. At most
+     * {@code lookAhead} messages are transformed ahead of the result that is emitted next.
+     * <p>
+     * The returned Observable is Cold, i.e. on each subscription a new HTTP request is made
+     * and the response elements returned as a new Observable. So for each subscriber, a separate HTTP request will be made.
+     *
+     * @param request   the request to send
+     * @param separator the separator
+     * @param transform the (thread-safe) function that transforms the messages into objects of type F
+     * @param scheduler the scheduler on which the transform function is run
+     * @param lookAhead the maximum number of messages that are transformed concurrently
+     * @param <F>       return type of the transform
+     * @return a cold Flowable of transformed messages
+     * @see OrderedParallelTransform
+     */
+    public <F> Flowable<F> executeAndDechunk(ClientRequest request, String separator, Function<String, F> transform, Scheduler scheduler, int lookAhead) {
+        return executeAndDechunk(request, separator)
+                .compose(new OrderedParallelTransform<String, F>(transform, scheduler, lookAhead));
+    }
+
+    /**
+     * Executes a request and writes the response body to a file.
+     * <p>
+     * The body parts are written as they are received, on an I/O thread, so the memory use does not depend on the size
+     * of the body: the response is back-pressured, and at most a few body parts are buffered while the file is written.
+     * An existing file is overwritten.
+     *
+     * @param request the request to send
+     * @param target  the file to write
+     * @return a Single that emits the number of bytes written when the body is complete
+     */
+    public Single<Long> executeToFile(ClientRequest request, Path target) {
+        return executeToFile(request, target, FileWriteOptions.DEFAULT);
+    }
+
+    /**
+     * Executes a request and writes the response body to a file, with the specified options for progress reporting,
+     * fsync and atomic replacement of the target.
+     *
+     * @param request the request to send
+     * @param target  the file to write
+     * @param options the options
+     * @return a Single that emits the number of bytes written when the body is complete
+     * @see #executeToFile(ClientRequest, Path)
+     */
+    public Single<Long> executeToFile(ClientRequest request, Path target, FileWriteOptions options) {
+        return Single.defer(() -> {
+            Path file = options.isAtomicMove()
+                    ? Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".part")
+                    : target;
+            Single<Long> written = Single.using(
+                    () -> FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+                    channel -> writeBody(request, channel, options),
+                    FileChannel::close);
+            if (!options.isAtomicMove()) {
+                return written;
+            }
+            return written
+                    .map(n -> {
+                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        return n;
+                    })
+                    .doOnError(e -> Files.deleteIfExists(file))
+                    .doOnDispose(() -> Files.deleteIfExists(file));
+        });
+    }
+
+    private Single<Long> writeBody(ClientRequest request, FileChannel channel, FileWriteOptions options) {
+        return Single.defer(() -> {
+            AtomicLong written = new AtomicLong();
+            AtomicLong contentLength = new AtomicLong(-1);
+            Function<ByteBuffer, Void> write = buffer -> {
+                try {
+                    while (buffer.hasRemaining()) {
+                        written.addAndGet(channel.write(buffer));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (options.getProgressListener() != null) {
+                    options.getProgressListener().onProgress(written.get(), contentLength.get());
+                }
+                return null;
+            };
+            return executeObservably(request)
+                    .observeOn(Schedulers.io(), false, FILE_WRITE_BUFFER_SIZE)
+                    .doOnNext(el -> el.match(
+                            status -> null,
+                            headers -> {
+                                headers.getHeader("Content-Length").ifPresent(l -> contentLength.set(Long.parseLong(l.trim())));
+                                return null;
+                            },
+                            part -> write.apply(part.getBodyByteBuffer()),
+                            response -> write.apply(response.getResponseBodyAsByteBuffer())))
+                    .ignoreElements()
+                    .andThen(Single.fromCallable(() -> {
+                        if (options.isFsync()) {
+                            channel.force(true);
+                        }
+                        return written.get();
+                    }));
+        });
+    }
+
+    /**
+     * Downloads the resource of the specified request into a file, by fetching byte ranges of the resource over several
+     * connections in parallel.
+     * <p>
+     * This uses a {@link ParallelDownloader} with its default settings (4 concurrent ranges of 8 MB). When the server
+     * does not support range requests, the resource is downloaded over a single connection.
+     *
+     * @param request the request for the resource
+     * @param target  the file to write
+     * @return a Single that emits the number of bytes in the file when the download is complete
+     * @see ParallelDownloader
+     */
+    public Single<Long> downloadParallel(ClientRequest request, Path target) {
+        return ParallelDownloader.builder(this).build().download(request, target);
+    }
+
+    /**
+     * Downloads the resource of the specified request into a file, by fetching byte ranges of the resource over the
+     * specified number of connections in parallel.
+     *
+     * @param request     the request for the resource
+     * @param target      the file to write
+     * @param parallelism the maximum number of ranges that are fetched concurrently
+     * @return a Single that emits the number of bytes in the file when the download is complete
+     * @see #downloadParallel(ClientRequest, Path)
+     */
+    public Single<Long> downloadParallel(ClientRequest request, Path target, int parallelism) {
+        return ParallelDownloader.builder(this).setParallelism(parallelism).build().download(request, target);
+    }
+
+    /**
+     * Downloads the resource of the specified request into a file, and resumes the download where it left off when
+     * the connection fails.
+     * <p>
+     * This uses a {@link ResumableDownloader} with its default settings. Progress is recorded in a checkpoint file next
+     * to the target, so that a download that failed can also be resumed by a later invocation of this method.
+     *
+     * @param request the request for the resource
+     * @param target  the file to write
+     * @return a Single that emits the number of bytes in the file when the download is complete
+     * @see ResumableDownloader
+     */
+    public Single<Long> downloadResumable(ClientRequest request, Path target) {
+        return ResumableDownloader.builder(this).build().download(request, target);
+    }
+
     /**
      * A Builder for {@code RxHttpClient} builders.
      */
@@ -0,0 +1,456 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.ClientRequestBuilder;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.HttpServerError;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static be.wegenenverkeer.rxhttpclient.aws.AwsSignature4Signer.CONTENT_SHA256_HEADER;
+import static be.wegenenverkeer.rxhttpclient.aws.AwsSignature4Signer.hexEncode;
+
+/**
+ * Uploads large objects to S3 (or an S3-compatible store) with the multipart upload API.
+ * <p>
+ * The content, a {@code File} or a {@code Flowable<byte[]>}, is split into parts of a fixed size that are uploaded
+ * concurrently. A part that fails with a server error or an I/O error is retried on its own; when a part cannot be
+ * uploaded, the multipart upload is aborted, so that S3 discards the parts that were already stored. Disposing of the
+ * upload also aborts it.
+ * <p>
+ * Each part is sent with its SHA-256 hash in the {@code x-amz-content-sha256} header. For a {@code Flowable} the hash
+ * is computed while the part is filled; for a {@code File} the part is hashed just before it is uploaded, and then
+ * sent directly from the file (see {@link ClientRequestBuilder#setBody(File, long, long)}).
+ * <p>
+ * The parts of a {@code Flowable} are held in memory while they are uploaded. The number of parts in memory is bounded
+ * by the memory budget (see {@link Builder#setMaxBufferedBytes(long)}): one part is filled while the others are
+ * uploaded, and the source is not requested to produce more until a part has been uploaded.
+ * <p>
+ * The requests are signed by the request signers of the client, so the client is usually configured with
+ * {@link be.wegenenverkeer.rxhttpclient.Builder#setAwsEndPoint} and an {@code AwsCredentialsProvider}. Paths are
+ * relative to the base URL of the client, e.g. {@code "/my-bucket/my/key"}.
+ * <p>
+ * Note that S3 requires all parts but the last one to be at least 5 MB, and allows at most 10000 parts.
+ */
+public class S3MultipartUploader {
+
+    final private static Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+
+    /**
+     * The maximum number of parts in a multipart upload
+     */
+    public static final int MAX_PARTS = 10_000;
+
+    private static final String EMPTY_PAYLOAD_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>(.*?)</UploadId>", Pattern.DOTALL);
+    private static final Pattern ETAG = Pattern.compile("<ETag>(.*?)</ETag>", Pattern.DOTALL);
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    final private RxJavaHttpClient client;
+    final private int partSize;
+    final private int parallelism;
+    final private long maxBufferedBytes;
+    final private int maxRetries;
+
+    private S3MultipartUploader(RxJavaHttpClient client, int partSize, int parallelism, long maxBufferedBytes, int maxRetries) {
+        this.client = client;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns a builder for an uploader that uses the specified client.
+     *
+     * @param client the client that sends (and signs) the requests
+     * @return a builder
+     */
+    public static Builder builder(RxJavaHttpClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Uploads a file.
+     *
+     * @param path the path of the object, relative to the base URL of the client
+     * @param file the file to upload
+     * @return a Single that emits the ETag of the object when the upload is complete
+     */
+    public Single<String> upload(String path, File file) {
+        return Single.defer(() -> {
+            long size = file.length();
+            long count = Math.max(1, (size + partSize - 1) / partSize);
+            if (count > MAX_PARTS) {
+                throw new IllegalArgumentException(String.format("File of %d bytes needs more than %d parts of %d bytes", size, MAX_PARTS, partSize));
+            }
+            return uploadParts(path, uploadId -> Flowable.rangeLong(1, count)
+                    .flatMapSingle(number -> Single.fromCallable(() -> filePart(file, number.intValue(), size))
+                            .subscribeOn(Schedulers.io())
+                            .flatMap(part -> uploadPart(path, uploadId, part)), false, parallelism));
+        });
+    }
+
+    /**
+     * Uploads the content produced by a {@code Flowable}.
+     *
+     * @param path    the path of the object, relative to the base URL of the client
+     * @param content the content to upload
+     * @return a Single that emits the ETag of the object when the upload is complete
+     */
+    public Single<String> upload(String path, Flowable<byte[]> content) {
+        return uploadParts(path, uploadId -> Flowable.defer(() -> {
+            PartSplitter splitter = new PartSplitter(partSize);
+            return content
+                    .concatMapIterable(splitter::split, 1)
+                    .concatWith(Maybe.fromCallable(splitter::remainder));
+        }).flatMapSingle(part -> uploadPart(path, uploadId, part), false, partsInFlight()));
+    }
+
+    /**
+     * The number of parts of a {@code Flowable} that are uploaded concurrently, such that these and the part that is
+     * being filled fit in the memory budget.
+     */
+    int partsInFlight() {
+        long budgeted = maxBufferedBytes / partSize - 1;
+        return (int) Math.max(1, Math.min(parallelism, budgeted));
+    }
+
+    private Single<String> uploadParts(String path, Function<String, Flowable<CompletedPart>> uploads) {
+        return initiate(path).flatMap(uploadId -> uploads.apply(uploadId)
+                .toList()
+                .flatMap(parts -> complete(path, uploadId, parts))
+                .onErrorResumeNext(e -> abort(path, uploadId)
+                        .onErrorComplete()
+                        .andThen(Single.<String>error(e)))
+                .doOnDispose(() -> abort(path, uploadId)
+                        .subscribe(() -> {}, e -> logger.warn("Failed to abort upload " + uploadId, e))));
+    }
+
+    private Single<String> initiate(String path) {
+        return withRetries(Single.defer(() -> {
+            ClientRequest request = client.requestBuilder()
+                    .setMethod("POST")
+                    .setUrlRelativetoBase(path)
+                    .addQueryParam("uploads", "")
+                    .setHeader(CONTENT_SHA256_HEADER, EMPTY_PAYLOAD_HASH)
+                    .build();
+            return client.executeToCompletion(request, response -> extract(UPLOAD_ID, response, "UploadId"))
+                    .singleOrError();
+        }));
+    }
+
+    private Single<CompletedPart> uploadPart(String path, String uploadId, Part part) {
+        return withRetries(Single.defer(() -> {
+            ClientRequestBuilder builder = client.requestBuilder()
+                    .setMethod("PUT")
+                    .setUrlRelativetoBase(path)
+                    .addQueryParam("partNumber", Integer.toString(part.number))
+                    .addQueryParam("uploadId", uploadId)
+                    .setHeader(CONTENT_SHA256_HEADER, part.sha256);
+            if (part.data != null) {
+                builder.setBody(part.data);
+            } else {
+                builder.setBody(part.file, part.offset, part.length);
+            }
+            return client.executeToCompletion(builder.build(), response -> new CompletedPart(part.number, etag(response)))
+                    .singleOrError();
+        }));
+    }
+
+    private Single<String> complete(String path, String uploadId, List<CompletedPart> parts) {
+        List<CompletedPart> sorted = new ArrayList<>(parts);
+        sorted.sort(Comparator.comparingInt(p -> p.number));
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (CompletedPart part : sorted) {
+            xml.append("<Part><PartNumber>").append(part.number).append("</PartNumber>")
+                    .append("<ETag>").append(part.etag).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+        return withRetries(Single.defer(() -> {
+            ClientRequest request = client.requestBuilder()
+                    .setMethod("POST")
+                    .setUrlRelativetoBase(path)
+                    .addQueryParam("uploadId", uploadId)
+                    .setHeader("Content-Type", "application/xml")
+                    .setHeader(CONTENT_SHA256_HEADER, sha256(body))
+                    .setBody(body)
+                    .build();
+            return client.executeToCompletion(request, S3MultipartUploader::completedETag).singleOrError();
+        }));
+    }
+
+    private Completable abort(String path, String uploadId) {
+        return Completable.defer(() -> {
+            ClientRequest request = client.requestBuilder()
+                    .setMethod("DELETE")
+                    .setUrlRelativetoBase(path)
+                    .addQueryParam("uploadId", uploadId)
+                    .setHeader(CONTENT_SHA256_HEADER, EMPTY_PAYLOAD_HASH)
+                    .build();
+            return client.executeToCompletion(request, ServerResponse::getStatusCode).ignoreElements();
+        });
+    }
+
+    private <T> Single<T> withRetries(Single<T> single) {
+        return single.retry(maxRetries, S3MultipartUploader::isRetryable);
+    }
+
+    /**
+     * Server errors and I/O errors are retried, client errors (4xx) are not.
+     */
+    private static boolean isRetryable(Throwable t) {
+        return !(t instanceof HttpClientError) && !(t instanceof IllegalStateException);
+    }
+
+    private static String etag(ServerResponse response) {
+        return response.getHeader("ETag")
+                .orElseThrow(() -> new IllegalStateException("No ETag in response to upload of part"));
+    }
+
+    /**
+     * S3 can report a failure of the completion with a 200 status, and an error document as body.
+     */
+    private static String completedETag(ServerResponse response) {
+        String body = response.getResponseBody();
+        if (body.contains("<Error>")) {
+            throw new HttpServerError(response.getStatusCode(), response, "Completion of multipart upload failed: " + body);
+        }
+        return extract(ETAG, body, "ETag");
+    }
+
+    private static String extract(Pattern pattern, ServerResponse response, String element) {
+        return extract(pattern, response.getResponseBody(), element);
+    }
+
+    private static String extract(Pattern pattern, String body, String element) {
+        Matcher matcher = pattern.matcher(body);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No " + element + " in response: " + body);
+        }
+        return matcher.group(1).trim();
+    }
+
+    private Part filePart(File file, int number, long size) throws IOException {
+        long offset = (long) (number - 1) * partSize;
+        long length = Math.min(partSize, size - offset);
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("File " + file + " was truncated during upload");
+                }
+                position += n;
+                buffer.flip();
+                digest.update(buffer);
+            }
+        }
+        return new Part(number, null, file, offset, length, hexEncode(digest.digest()));
+    }
+
+    private static String sha256(byte[] bytes) {
+        return hexEncode(newDigest().digest(bytes));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A part to upload: either an array, or a region of a file.
+     */
+    static final class Part {
+        final int number;
+        final byte[] data;
+        final File file;
+        final long offset;
+        final long length;
+        final String sha256;
+
+        Part(int number, byte[] data, File file, long offset, long length, String sha256) {
+            this.number = number;
+            this.data = data;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.sha256 = sha256;
+        }
+    }
+
+    static final class CompletedPart {
+        final int number;
+        final String etag;
+
+        CompletedPart(int number, String etag) {
+            this.number = number;
+            this.etag = etag;
+        }
+    }
+
+    /**
+     * Splits the content of a single subscription into parts, and hashes the parts while they are filled.
+     */
+    static final class PartSplitter {
+        final private int partSize;
+        final private MessageDigest digest = newDigest();
+
+        private byte[] buffer;
+        private int position = 0;
+        private int nextNumber = 1;
+
+        PartSplitter(int partSize) {
+            this.partSize = partSize;
+        }
+
+        List<Part> split(byte[] chunk) {
+            List<Part> parts = new ArrayList<>(1);
+            int i = 0;
+            while (i < chunk.length) {
+                if (buffer == null) {
+                    buffer = new byte[partSize];
+                }
+                int n = Math.min(partSize - position, chunk.length - i);
+                System.arraycopy(chunk, i, buffer, position, n);
+                digest.update(chunk, i, n);
+                i += n;
+                position += n;
+                if (position == partSize) {
+                    parts.add(nextPart(buffer));
+                }
+            }
+            return parts;
+        }
+
+        /**
+         * Returns the last, partially filled part; or null if the content ended at a part boundary. Empty content is
+         * uploaded as a single empty part, since a multipart upload needs at least one part.
+         */
+        Part remainder() {
+            if (position == 0 && nextNumber > 1) {
+                return null;
+            }
+            return nextPart(buffer == null ? new byte[0] : Arrays.copyOf(buffer, position));
+        }
+
+        private Part nextPart(byte[] data) {
+            if (nextNumber > MAX_PARTS) {
+                throw new IllegalArgumentException(String.format("Content needs more than %d parts of %d bytes", MAX_PARTS, partSize));
+            }
+            Part part = new Part(nextNumber++, data, null, 0, data.length, hexEncode(digest.digest()));
+            buffer = null;
+            position = 0;
+            return part;
+        }
+    }
+
+    /**
+     * A builder for {@code S3MultipartUploader}s.
+     */
+    public static class Builder {
+
+        final private RxJavaHttpClient client;
+        private int partSize = 8 * 1024 * 1024;
+        private int parallelism = 4;
+        private long maxBufferedBytes = 64L * 1024 * 1024;
+        private int maxRetries = 3;
+
+        Builder(RxJavaHttpClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Sets the size of the parts (default 8 MB). All parts but the last one have this size.
+         *
+         * @param partSize the part size in bytes
+         * @return this {@code Builder}
+         */
+        public Builder setPartSize(int partSize) {
+            if (partSize <= 0) {
+                throw new IllegalArgumentException("Part size must be positive");
+            }
+            this.partSize = partSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of parts that are uploaded concurrently (default 4).
+         *
+         * @param parallelism the maximum number of concurrent part uploads
+         * @return this {@code Builder}
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("Parallelism must be positive");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of bytes of a {@code Flowable} that is held in memory (default 64 MB). When the
+         * budget is smaller than two parts, parts are uploaded one at a time, while the next part is filled.
+         *
+         * @param maxBufferedBytes the memory budget in bytes
+         * @return this {@code Builder}
+         */
+        public Builder setMaxBufferedBytes(long maxBufferedBytes) {
+            if (maxBufferedBytes <= 0) {
+                throw new IllegalArgumentException("Memory budget must be positive");
+            }
+            this.maxBufferedBytes = maxBufferedBytes;
+            return this;
+        }
+
+        /**
+         * Sets the number of times a failed request is retried (default 3).
+         *
+         * @param maxRetries the maximum number of retries of each request
+         * @return this {@code Builder}
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Number of retries can't be negative");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public S3MultipartUploader build() {
+            return new S3MultipartUploader(client, partSize, parallelism, maxBufferedBytes, maxRetries);
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import be.wegenenverkeer.rxhttpclient.ServerSentEvent;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * An incremental, byte-level decoder for {@code text/event-stream} (Server-Sent Events) response bodies.
+ * <p>
+ * Lines are collected in a reusable byte buffer, field names are compared as bytes, and the values of {@code data}
+ * fields are accumulated as bytes, so that the only {@code String}s that are created are the field values of the
+ * dispatched events. Lines may end in CR, LF or CRLF, also when these are split across body parts.
+ * <p>
+ * The last event id and the reconnection time are retained when the decoder is {@link #reset()} for a new
+ * connection. Instances are not thread-safe: use one instance per stream.
+ */
+public class ServerSentEventDecoder {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] EVENT = {'e', 'v', 'e', 'n', 't'};
+    private static final byte[] ID = {'i', 'd'};
+    private static final byte[] RETRY = {'r', 'e', 't', 'r', 'y'};
+
+    //the current line
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private boolean skipLF = false;
+    private boolean atStart = true;
+
+    //the current event
+    private byte[] data = new byte[256];
+    private int dataLength = 0;
+    private String eventType;
+    private String id;
+    private long retry = -1;
+
+    //the state of the stream
+    private String lastEventId;
+    private long reconnectionTime = -1;
+
+    /**
+     * Returns a transformer that decodes a Flowable of response body bytes into a Flowable of events.
+     *
+     * @return a transformer that decodes a Flowable of response body bytes into a Flowable of events
+     */
+    public static FlowableTransformer<byte[], ServerSentEvent> transformer() {
+        return upstream -> Flowable.defer(() -> {
+            ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+            return upstream.concatMapIterable(decoder::decode);
+        });
+    }
+
+    /**
+     * Decodes the next part of the response body.
+     *
+     * @param chunk the next part of the response body
+     * @return the events that are complete
+     */
+    public List<ServerSentEvent> decode(byte[] chunk) {
+        List<ServerSentEvent> events = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < chunk.length; i++) {
+            byte b = chunk[i];
+            if (skipLF) {
+                skipLF = false;
+                if (b == LF) {
+                    start = i + 1;
+                    continue;
+                }
+            }
+            if (b == CR || b == LF) {
+                appendToLine(chunk, start, i);
+                processLine(events);
+                start = i + 1;
+                skipLF = b == CR;
+            }
+        }
+        appendToLine(chunk, start, chunk.length);
+        return events;
+    }
+
+    /**
+     * Discards the incomplete line and event, e.g. when the connection was closed. The last event id and the
+     * reconnection time are retained.
+     */
+    public void reset() {
+        lineLength = 0;
+        skipLF = false;
+        atStart = true;
+        resetEvent();
+    }
+
+    /**
+     * Returns the last event id of the stream, i.e. the value of the last {@code id} field that was received.
+     *
+     * @return the last event id of the stream, if any.
+     */
+    public Optional<String> getLastEventId() {
+        return Optional.ofNullable(lastEventId).filter(s -> !s.isEmpty());
+    }
+
+    /**
+     * Returns the reconnection time (in milliseconds) that was set by the server, if any.
+     *
+     * @return the reconnection time that was set by the server, if any.
+     */
+    public OptionalLong getReconnectionTime() {
+        return reconnectionTime < 0 ? OptionalLong.empty() : OptionalLong.of(reconnectionTime);
+    }
+
+    private void processLine(List<ServerSentEvent> events) {
+        int from = 0;
+        if (atStart) {
+            atStart = false;
+            if (startsWith(line, lineLength, BOM)) {
+                from = BOM.length;
+            }
+        }
+        int length = lineLength;
+        lineLength = 0;
+
+        if (length == from) {
+            dispatch(events);
+            return;
+        }
+        if (line[from] == ':') {
+            //comment
+            return;
+        }
+
+        int colon = indexOf(line, from, length, (byte) ':');
+        int nameEnd = colon < 0 ? length : colon;
+        int valueStart = colon < 0 ? length : colon + 1;
+        if (valueStart < length && line[valueStart] == ' ') {
+            valueStart++;
+        }
+
+        if (fieldIs(from, nameEnd, DATA)) {
+            appendToData(valueStart, length);
+        } else if (fieldIs(from, nameEnd, EVENT)) {
+            eventType = new String(line, valueStart, length - valueStart, StandardCharsets.UTF_8);
+        } else if (fieldIs(from, nameEnd, ID)) {
+            if (indexOf(line, valueStart, length, (byte) 0) < 0) {
+                id = new String(line, valueStart, length - valueStart, StandardCharsets.UTF_8);
+                lastEventId = id;
+            }
+        } else if (fieldIs(from, nameEnd, RETRY)) {
+            long value = parseDigits(valueStart, length);
+            if (value >= 0) {
+                retry = value;
+                reconnectionTime = value;
+            }
+        }
+        //other fields are ignored
+    }
+
+    private void dispatch(List<ServerSentEvent> events) {
+        if (dataLength > 0) {
+            //the data ends with a line feed that is not part of the data
+            String value = new String(data, 0, dataLength - 1, StandardCharsets.UTF_8);
+            events.add(new ServerSentEvent(id, eventType, value, retry));
+        }
+        resetEvent();
+    }
+
+    private void resetEvent() {
+        dataLength = 0;
+        eventType = null;
+        id = null;
+        retry = -1;
+    }
+
+    private boolean fieldIs(int from, int to, byte[] name) {
+        if (to - from != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (line[from + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long parseDigits(int from, int to) {
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private void appendToLine(byte[] chunk, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return;
+        }
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(chunk, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void appendToData(int from, int to) {
+        int length = to - from;
+        if (dataLength + length + 1 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length + 1));
+        }
+        System.arraycopy(line, from, data, dataLength, length);
+        dataLength += length;
+        data[dataLength++] = LF;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,170 @@
+package be.wegenenverkeer.rxhttpclient.rxjava;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.FlowableTransformer;
+import io.reactivex.rxjava3.core.Maybe;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A stateful decoder for a stream of bytes in some charset.
+ * <p>
+ * One {@link CharsetDecoder} and one {@link CharBuffer} are reused for the whole stream. When a chunk ends in the middle
+ * of a multi-byte character, the incomplete byte sequence is carried over to the next chunk, so characters that are split
+ * across chunks are decoded correctly. Chunks that only contain ASCII bytes in an ASCII-compatible charset bypass the
+ * decoder altogether.
+ * <p>
+ * Malformed input and unmappable characters are replaced, just as in {@code new String(bytes, charset)}. Instances are
+ * not thread-safe: use one instance per stream.
+ */
+public class StreamingCharsetDecoder {
+
+    //large enough for an incomplete byte sequence in any charset
+    private static final int MAX_INCOMPLETE_SEQUENCE = 16;
+
+    private final CharsetDecoder decoder;
+    private final boolean asciiCompatible;
+    private final ByteBuffer carry = ByteBuffer.allocate(MAX_INCOMPLETE_SEQUENCE);
+    private CharBuffer out = CharBuffer.allocate(1024);
+
+    public StreamingCharsetDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    /**
+     * Returns a transformer that decodes a Flowable of byte chunks into a Flowable of text chunks. Empty text chunks
+     * (e.g. when a chunk only holds part of a character) are not emitted.
+     *
+     * @param charset the charset of the bytes
+     * @return a transformer that decodes a Flowable of byte chunks into a Flowable of text chunks
+     */
+    public static FlowableTransformer<byte[], String> transformer(Charset charset) {
+        return upstream -> Flowable.defer(() -> {
+            StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(charset);
+            return upstream
+                    .map(decoder::decode)
+                    .concatWith(Maybe.fromCallable(decoder::flush))
+                    .filter(str -> !str.isEmpty());
+        });
+    }
+
+    /**
+     * Returns true if ASCII characters are encoded as the single bytes of US-ASCII in the specified charset, and bytes
+     * below 0x80 never occur as part of a multi-byte character.
+     *
+     * @param charset the charset
+     * @return true if the charset is compatible with ASCII
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes the next chunk of the stream. Bytes of an incomplete character at the end of the chunk are retained for the
+     * next invocation.
+     *
+     * @param bytes the next chunk of bytes
+     * @return the decoded characters
+     */
+    public String decode(byte[] bytes) {
+        if (asciiCompatible && carry.position() == 0 && isAscii(bytes)) {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        int i = 0;
+        //first complete the carried-over character, one byte at a time
+        while (carry.position() > 0 && i < bytes.length) {
+            carry.put(bytes[i++]);
+            carry.flip();
+            decodeInto(carry, false);
+            carry.compact();
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes, i, bytes.length - i);
+        decodeInto(in, false);
+        if (in.hasRemaining()) {
+            carry.put(in);
+        }
+        return drainOutput();
+    }
+
+    /**
+     * Decodes a complete message, i.e. a byte sequence that doesn't continue in a next chunk.
+     *
+     * @param bytes the bytes of the message
+     * @return the decoded message
+     */
+    public String decodeMessage(byte[] bytes) {
+        if (asciiCompatible && isAscii(bytes)) {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        decoder.reset();
+        decodeInto(ByteBuffer.wrap(bytes), true);
+        flushDecoder();
+        return drainOutput();
+    }
+
+    /**
+     * Ends the stream. Any incomplete character that is still carried over is replaced.
+     *
+     * @return the remaining decoded characters
+     */
+    public String flush() {
+        carry.flip();
+        decodeInto(carry, true);
+        carry.clear();
+        flushDecoder();
+        return drainOutput();
+    }
+
+    private void decodeInto(ByteBuffer in, boolean endOfInput) {
+        for (; ; ) {
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            if (result.isOverflow()) {
+                growOutput();
+            } else {
+                //with the REPLACE action, the result is always underflow or overflow
+                return;
+            }
+        }
+    }
+
+    private void flushDecoder() {
+        while (decoder.flush(out).isOverflow()) {
+            growOutput();
+        }
+        decoder.reset();
+    }
+
+    private void growOutput() {
+        CharBuffer larger = CharBuffer.allocate(out.capacity() * 2);
+        out.flip();
+        larger.put(out);
+        out = larger;
+    }
+
+    private String drainOutput() {
+        out.flip();
+        String result = out.toString();
+        out.clear();
+        return result;
+    }
+
+    private static boolean isAscii(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
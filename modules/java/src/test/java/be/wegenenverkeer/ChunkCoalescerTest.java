@@ -0,0 +1,105 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.ChunkCoalescer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkCoalescerTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+
+    @Test
+    public void testSmallPartsAreCoalescedUpToMinSize() {
+        assertEquals(Arrays.asList("abcd", "efgh", "i"), receivedOnInput(4, 8, "ab", "cd", "efg", "h", "i"));
+    }
+
+    @Test
+    public void testBatchesNeverExceedMaxSize() {
+        assertEquals(Arrays.asList("abc", "defgh", "ijklmnopq"), receivedOnInput(5, 6, "ab", "c", "defgh", "ijklmnopq"));
+    }
+
+    @Test
+    public void testBatchIsEmittedAfterMaxDelay() {
+        PublishProcessor<byte[]> source = PublishProcessor.create();
+        TestSubscriber<String> subscriber = source
+                .lift(new ChunkCoalescer(100, 1000, 50, TimeUnit.MILLISECONDS, scheduler))
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                .test();
+
+        source.onNext(bytes("ab"));
+        source.onNext(bytes("cd"));
+        scheduler.advanceTimeBy(49, TimeUnit.MILLISECONDS);
+        subscriber.assertNoValues();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertValues("abcd");
+
+        source.onNext(bytes("ef"));
+        source.onComplete();
+        subscriber.assertValues("abcd", "ef");
+        subscriber.assertComplete();
+    }
+
+    @Test
+    public void testBackpressure() {
+        TestSubscriber<String> subscriber = Flowable.fromArray("ab", "cd", "ef", "gh", "ij")
+                .map(this::bytes)
+                .lift(new ChunkCoalescer(4, 4, 1, TimeUnit.HOURS, scheduler))
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                .test(0);
+
+        subscriber.assertNoValues();
+        subscriber.request(1);
+        subscriber.assertValues("abcd");
+        subscriber.request(1);
+        subscriber.assertValues("abcd", "efgh");
+        subscriber.assertNotComplete();
+        subscriber.request(1);
+        subscriber.assertValues("abcd", "efgh", "ij");
+        subscriber.assertComplete();
+    }
+
+    @Test
+    public void testRequestsUpstreamInBatches() {
+        List<Long> upstreamRequests = new ArrayList<>();
+        TestSubscriber<byte[]> subscriber = Flowable.range(0, 100)
+                .map(i -> bytes("a"))
+                .doOnRequest(upstreamRequests::add)
+                .lift(new ChunkCoalescer(10, 10, 1, TimeUnit.HOURS, scheduler))
+                .test();
+
+        subscriber.assertValueCount(10);
+        subscriber.assertComplete();
+        assertTrue(upstreamRequests.stream().allMatch(n -> n > 1));
+        assertTrue(upstreamRequests.size() < 100);
+    }
+
+    private byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> receivedOnInput(int minSize, int maxSize, String... chunks) {
+        TestSubscriber<byte[]> subscriber = Flowable.fromArray(chunks)
+                .map(this::bytes)
+                .lift(new ChunkCoalescer(minSize, maxSize, 1, TimeUnit.HOURS, scheduler))
+                .test();
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        subscriber.assertComplete();
+        return subscriber.values().stream()
+                .map(bytes -> new String(bytes, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+}
@@ -1,5 +1,6 @@
 package be.wegenenverkeer;
 
+import be.wegenenverkeer.rxhttpclient.rxjava.ByteDechunker;
 import be.wegenenverkeer.rxhttpclient.rxjava.Dechunker;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.subscribers.TestSubscriber;
@@ -9,6 +10,7 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 
@@ -64,11 +66,130 @@ public class DechunkersTest {
     }
 
 
+    @Test
+    public void testRegexDechunker() {
+        assertEquals(Arrays.asList("first", "second", "third"), receivedOnRegexInput("\\r?\\n",
+                "first\r\nsec", "ond\nthird"
+        ));
+    }
+
+    @Test
+    public void testRegexDechunkerSeparatorAtEndOfChunk() {
+        assertEquals(Arrays.asList("a", "b", "c"), receivedOnRegexInput("[,;]",
+                "a,", "b;", "c"
+        ));
+    }
+
+    @Test
+    public void testRegexDechunkerSeparatorAcrossChunks() {
+        assertEquals(Arrays.asList("first", "second"), receivedOnRegexInput("\\r?\\n",
+                "first\r", "\nsecond"
+        ));
+    }
+
+    @Test
+    public void testRegexDechunkerVariableLengthSeparator() {
+        assertEquals(Arrays.asList("a", "b", "c"), receivedOnRegexInput("\\s+",
+                "a  b", " ", "c"
+        ));
+    }
+
+    @Test
+    public void testLiteralStringDechunker() {
+        TestSubscriber<String> subscriber = Flowable.fromArray("a.b|", "|c", "|", "d")
+                .lift(Dechunker.literal("||"))
+                .test();
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        subscriber.assertValues("a.b", "c", "d");
+    }
+
+    @Test
+    public void testByteDechunker() {
+        assertEquals(Arrays.asList("first", "second"), receivedOnByteInput("\n",
+                "fi",
+                "rst",
+                "\n",
+                "sec",
+                "ond"
+        ));
+    }
+
+    @Test
+    public void testByteDechunkerSeparatorAsChunk() {
+        assertEquals(Arrays.asList("first", "second", "third"), receivedOnByteInput("\n",
+                "fi", "rst\n", "\n", "sec", "ond\n", "\n",
+                "third"
+        ));
+    }
+
+    @Test
+    public void testByteDechunkerMultiByteSeparatorAcrossChunks() {
+        assertEquals(Arrays.asList("first", "second", "third"), receivedOnByteInput("\r\n\r\n",
+                "first\r", "\n\r", "\nsecond\r\n", "\r\nthird"
+        ));
+    }
+
+    @Test
+    public void testByteDechunkerPartialSeparatorMatch() {
+        assertEquals(Arrays.asList("a-b", "c--d", "e"), receivedOnByteInput("---",
+                "a-b---c-", "-d-", "--e"
+        ));
+    }
+
+    @Test
+    public void testByteDechunkerSeparatorIsNotARegex() {
+        assertEquals(Arrays.asList("a.b", "c"), receivedOnByteInput("|",
+                "a.b|", "c"
+        ));
+    }
+
+    @Test
+    public void testByteDechunkerMultiByteCharactersAcrossChunks() {
+        byte[] message = "één".getBytes(UTF8);
+        List<byte[]> received = receivedOnByteInput("\n".getBytes(UTF8),
+                Arrays.copyOfRange(message, 0, 1), Arrays.copyOfRange(message, 1, message.length), "\n".getBytes(UTF8));
+        assertEquals(Arrays.asList("één"), received.stream().map(b -> new String(b, UTF8)).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testByteDechunkerIsBackpressured() {
+        TestSubscriber<byte[]> subscriber = Flowable.just("a\nb\nc\nd".getBytes(UTF8))
+                .compose(new ByteDechunker("\n".getBytes(UTF8)))
+                .test(1);
+        subscriber.assertValueCount(1);
+        subscriber.request(2);
+        subscriber.assertValueCount(3);
+        subscriber.assertNotComplete();
+        subscriber.request(1);
+        subscriber.assertValueCount(4);
+        subscriber.assertComplete();
+    }
+
+    public List<String> receivedOnByteInput(String separator, String... chunks) {
+        byte[][] input = Arrays.stream(chunks).map(c -> c.getBytes(UTF8)).toArray(byte[][]::new);
+        return receivedOnByteInput(separator.getBytes(UTF8), input).stream()
+                .map(b -> new String(b, UTF8))
+                .collect(Collectors.toList());
+    }
+
+    public List<byte[]> receivedOnByteInput(byte[] separator, byte[]... chunks) {
+        TestSubscriber<byte[]> subscriber = new TestSubscriber<>();
+        Flowable.fromArray(chunks)
+                .compose(new ByteDechunker(separator))
+                .subscribe(subscriber);
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        return subscriber.values();
+    }
+
     public List<String> receivedOnInput(String... chunks) {
+        return receivedOnRegexInput("\n", chunks);
+    }
+
+    public List<String> receivedOnRegexInput(String separator, String... chunks) {
 
         TestSubscriber<String> subscriber = new TestSubscriber<>();
         Flowable.fromArray(chunks)
-                .lift(new Dechunker("\n"))
+                .lift(new Dechunker(separator))
                 .subscribe(subscriber);
         subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
         return subscriber.values();
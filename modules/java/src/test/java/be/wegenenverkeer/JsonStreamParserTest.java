@@ -0,0 +1,88 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.JsonStreamParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonStreamParserTest {
+
+    @Test
+    public void testArrayElements() {
+        List<Map> received = receivedOnInput(Map.class,
+                "[{\"id\": 1, \"na", "me\": \"één\"},", " {\"id\": 2, \"nested\": {\"a\": [1, 2]}}", "]");
+        assertEquals(2, received.size());
+        assertEquals("één", received.get(0).get("name"));
+        assertEquals(2, received.get(1).get("id"));
+    }
+
+    @Test
+    public void testNdJson() {
+        List<JsonNode> received = receivedOnInput(JsonNode.class,
+                "{\"id\": 1}\n{\"id\"", ": 2}\n", "{\"id\": 3}\n");
+        assertEquals(3, received.size());
+        assertEquals(3, received.get(2).get("id").asInt());
+    }
+
+    @Test
+    public void testScalarArrayElementsInSingleByteChunks() {
+        String json = "[1, 22, 333, null, 4444]";
+        List<String> chunks = new ArrayList<>();
+        for (char c : json.toCharArray()) {
+            chunks.add(String.valueOf(c));
+        }
+        List<Integer> received = receivedOnInput(Integer.class, chunks.toArray(new String[0]));
+        assertEquals(List.of(1, 22, 333, 4444), received);
+    }
+
+    @Test
+    public void testElementsAreEmittedWhenComplete() {
+        TestSubscriber<Map> subscriber = Flowable.just("[{\"id\": 1}, {\"id\"".getBytes(StandardCharsets.UTF_8))
+                .concatWith(Flowable.never())
+                .compose(JsonStreamParser.forType(Map.class))
+                .test();
+        subscriber.assertValueCount(1);
+        subscriber.assertNotComplete();
+        subscriber.cancel();
+    }
+
+    @Test
+    public void testTruncatedInputFails() {
+        TestSubscriber<Map> subscriber = Flowable.just("[{\"id\": 1}, {\"id\"".getBytes(StandardCharsets.UTF_8))
+                .compose(JsonStreamParser.forType(Map.class))
+                .test();
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        subscriber.assertValueCount(1);
+        subscriber.assertError(Exception.class);
+    }
+
+    @Test
+    public void testIsBackpressured() {
+        TestSubscriber<Integer> subscriber = Flowable.just("[1, 2, 3]".getBytes(StandardCharsets.UTF_8))
+                .compose(JsonStreamParser.forType(Integer.class))
+                .test(1);
+        subscriber.assertValues(1);
+        subscriber.request(2);
+        subscriber.assertValues(1, 2, 3);
+        subscriber.assertComplete();
+    }
+
+    private <T> List<T> receivedOnInput(Class<T> type, String... chunks) {
+        TestSubscriber<T> subscriber = Flowable.fromArray(chunks)
+                .map(c -> c.getBytes(StandardCharsets.UTF_8))
+                .compose(JsonStreamParser.forType(type))
+                .test();
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+        return subscriber.values();
+    }
+}
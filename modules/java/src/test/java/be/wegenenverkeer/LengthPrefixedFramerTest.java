@@ -0,0 +1,108 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.LengthPrefixedFramer;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class LengthPrefixedFramerTest {
+
+    @Test
+    public void testVarintFramesAcrossChunks() {
+        byte[] large = new byte[300];
+        Arrays.fill(large, (byte) 'x');
+        byte[] stream = concat(varintFrame("first".getBytes(StandardCharsets.UTF_8)), varintFrame(new byte[0]), varintFrame(large));
+
+        //split at every possible position
+        for (int i = 0; i <= stream.length; i++) {
+            List<byte[]> frames = receivedOnInput(LengthPrefixedFramer.varint(1024),
+                    Arrays.copyOfRange(stream, 0, i), Arrays.copyOfRange(stream, i, stream.length));
+            assertEquals(3, frames.size());
+            assertEquals("first", new String(frames.get(0), StandardCharsets.UTF_8));
+            assertEquals(0, frames.get(1).length);
+            assertEquals(300, frames.get(2).length);
+        }
+    }
+
+    @Test
+    public void testFixed32FramesInSingleByteChunks() {
+        byte[] stream = concat(fixed32Frame("a".getBytes(StandardCharsets.UTF_8)), fixed32Frame("bcd".getBytes(StandardCharsets.UTF_8)));
+        byte[][] chunks = new byte[stream.length][];
+        for (int i = 0; i < stream.length; i++) {
+            chunks[i] = new byte[]{stream[i]};
+        }
+        List<String> frames = receivedOnInput(LengthPrefixedFramer.fixed32(1024), chunks).stream()
+                .map(f -> new String(f, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+        assertEquals(List.of("a", "bcd"), frames);
+    }
+
+    @Test
+    public void testAsByteBuffers() {
+        TestSubscriber<ByteBuffer> subscriber = Flowable.just(fixed32Frame(new byte[]{1, 2, 3}))
+                .compose(LengthPrefixedFramer.fixed32(16).asByteBuffers())
+                .test();
+        subscriber.assertValue(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testFrameLargerThanMaximumFails() {
+        TestSubscriber<byte[]> subscriber = Flowable.just(varintFrame(new byte[200]))
+                .compose(LengthPrefixedFramer.varint(100))
+                .test();
+        subscriber.assertError(ProtocolException.class);
+    }
+
+    @Test
+    public void testIncompleteFrameFails() {
+        byte[] frame = fixed32Frame(new byte[10]);
+        TestSubscriber<byte[]> subscriber = Flowable.just(Arrays.copyOf(frame, 8))
+                .compose(LengthPrefixedFramer.fixed32(100))
+                .test();
+        subscriber.assertError(ProtocolException.class);
+    }
+
+    private List<byte[]> receivedOnInput(LengthPrefixedFramer framer, byte[]... chunks) {
+        TestSubscriber<byte[]> subscriber = Flowable.fromArray(chunks)
+                .compose(framer)
+                .test();
+        subscriber.awaitDone(10, TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+        return subscriber.values();
+    }
+
+    private static byte[] varintFrame(byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length = payload.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] fixed32Frame(byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] a : arrays) {
+            out.writeBytes(a);
+        }
+        return out.toByteArray();
+    }
+}
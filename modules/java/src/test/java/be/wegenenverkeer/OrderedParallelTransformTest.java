@@ -0,0 +1,77 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.OrderedParallelTransform;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedParallelTransformTest {
+
+    @Test
+    public void testResultsAreInOriginalOrder() {
+        List<Integer> expected = IntStream.range(0, 200).map(i -> i * 2).boxed().collect(Collectors.toList());
+        List<Integer> received = Flowable.range(0, 200)
+                .compose(new OrderedParallelTransform<Integer, Integer>(i -> {
+                    sleep(ThreadLocalRandom.current().nextInt(3));
+                    return i * 2;
+                }, Schedulers.computation(), 8))
+                .toList()
+                .blockingGet();
+        assertEquals(expected, received);
+    }
+
+    @Test
+    public void testConcurrencyIsBoundedByLookAhead() {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            Flowable.range(0, 100)
+                    .compose(OrderedParallelTransform.<Integer, Integer>on(executor, i -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        sleep(2);
+                        running.decrementAndGet();
+                        return i;
+                    }, 4))
+                    .blockingSubscribe();
+            assertTrue(maxRunning.get() <= 4);
+            assertTrue(maxRunning.get() > 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIsBackpressured() {
+        AtomicInteger requested = new AtomicInteger();
+        TestSubscriber<Integer> subscriber = Flowable.range(0, 100)
+                .doOnRequest(n -> requested.addAndGet((int) Math.min(n, 1000)))
+                .compose(new OrderedParallelTransform<Integer, Integer>(i -> i, Schedulers.computation(), 4))
+                .test(2);
+        subscriber.awaitCount(2);
+        subscriber.assertValues(0, 1);
+        assertTrue(requested.get() <= 2 + 4);
+        subscriber.cancel();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.ServerSentEvent;
+import be.wegenenverkeer.rxhttpclient.rxjava.ServerSentEventDecoder;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerSentEventDecoderTest {
+
+    @Test
+    public void testSingleEvent() {
+        List<ServerSentEvent> events = decode("id: 1\nevent: update\ndata: hello\n\n");
+        assertEquals(List.of(new ServerSentEvent("1", "update", "hello", -1)), events);
+    }
+
+    @Test
+    public void testMultipleDataLinesAreJoined() {
+        List<ServerSentEvent> events = decode("data:first\ndata: second\ndata\n\n");
+        assertEquals("first\nsecond\n", events.get(0).getData());
+        assertEquals(ServerSentEvent.DEFAULT_EVENT, events.get(0).getEvent());
+        assertEquals(Optional.empty(), events.get(0).getId());
+    }
+
+    @Test
+    public void testCommentsAndEventsWithoutDataAreSkipped() {
+        List<ServerSentEvent> events = decode(": keep-alive\n\nevent: empty\n\ndata: x\n\n");
+        assertEquals(List.of(new ServerSentEvent(null, null, "x", -1)), events);
+    }
+
+    @Test
+    public void testLineEndings() {
+        List<ServerSentEvent> events = decode("data: a\r\n\r\ndata: b\r\rdata: c\n\n");
+        assertEquals(3, events.size());
+        assertEquals("c", events.get(2).getData());
+    }
+
+    @Test
+    public void testCrLfSplitAcrossChunks() {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<ServerSentEvent> events = new ArrayList<>();
+        events.addAll(decoder.decode(bytes("data: a\r")));
+        events.addAll(decoder.decode(bytes("\n\r")));
+        events.addAll(decoder.decode(bytes("\ndata: b\r\n\r\n")));
+        assertEquals(2, events.size());
+        assertEquals("b", events.get(1).getData());
+    }
+
+    @Test
+    public void testMultiByteCharactersInSingleByteChunks() {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<ServerSentEvent> events = new ArrayList<>();
+        for (byte b : bytes("﻿data: één € \n\n")) {
+            events.addAll(decoder.decode(new byte[]{b}));
+        }
+        assertEquals(List.of(new ServerSentEvent(null, null, "één € ", -1)), events);
+    }
+
+    @Test
+    public void testRetryAndLastEventId() {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<ServerSentEvent> events = decoder.decode(bytes("retry: 250\nid: 7\ndata: x\n\nretry: abc\nid: 8\n\n"));
+        assertEquals(OptionalLong.of(250), events.get(0).getRetry());
+        assertEquals(OptionalLong.of(250), decoder.getReconnectionTime());
+        assertEquals(Optional.of("8"), decoder.getLastEventId());
+    }
+
+    @Test
+    public void testResetDiscardsIncompleteEvent() {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        assertTrue(decoder.decode(bytes("id: 3\ndata: x\n\ndata: incomplete\n")).size() == 1);
+        decoder.reset();
+        assertEquals(List.of(new ServerSentEvent(null, null, "y", -1)), decoder.decode(bytes("data: y\n\n")));
+        assertEquals(Optional.of("3"), decoder.getLastEventId());
+    }
+
+    private List<ServerSentEvent> decode(String... chunks) {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<ServerSentEvent> events = new ArrayList<>();
+        Arrays.stream(chunks).forEach(c -> events.addAll(decoder.decode(bytes(c))));
+        return events;
+    }
+
+    private static byte[] bytes(String str) {
+        return str.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,77 @@
+package be.wegenenverkeer;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.StreamingCharsetDecoder;
+import io.reactivex.rxjava3.core.Flowable;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingCharsetDecoderTest {
+
+    private static final String TEXT = "één, twee, drie € 😀 ok";
+
+    @Test
+    public void testAsciiChunks() {
+        StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(StandardCharsets.UTF_8);
+        assertEquals("abc", decoder.decode("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("def", decoder.decode("def".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("", decoder.flush());
+    }
+
+    @Test
+    public void testUtf8CharactersSplitAcrossChunks() {
+        assertDecodesInAnySplit(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testUtf16CharactersSplitAcrossChunks() {
+        assertDecodesInAnySplit(StandardCharsets.UTF_16BE);
+    }
+
+    @Test
+    public void testSingleByteChunks() {
+        byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> chunks = new ArrayList<>();
+        for (byte b : bytes) {
+            chunks.add(new byte[]{b});
+        }
+        String received = Flowable.fromIterable(chunks)
+                .compose(StreamingCharsetDecoder.transformer(StandardCharsets.UTF_8))
+                .reduce("", String::concat)
+                .blockingGet();
+        assertEquals(TEXT, received);
+    }
+
+    @Test
+    public void testIncompleteCharacterAtEndIsReplaced() {
+        byte[] bytes = "a€".getBytes(StandardCharsets.UTF_8);
+        StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(StandardCharsets.UTF_8);
+        assertEquals("a", decoder.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertEquals("�", decoder.flush());
+    }
+
+    @Test
+    public void testDecodeMessage() {
+        StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(StandardCharsets.UTF_8);
+        assertEquals(TEXT, decoder.decodeMessage(TEXT.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("plain", decoder.decodeMessage("plain".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(TEXT, decoder.decodeMessage(TEXT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertDecodesInAnySplit(Charset charset) {
+        byte[] bytes = TEXT.getBytes(charset);
+        for (int i = 0; i <= bytes.length; i++) {
+            StreamingCharsetDecoder decoder = new StreamingCharsetDecoder(charset);
+            String received = decoder.decode(Arrays.copyOfRange(bytes, 0, i))
+                    + decoder.decode(Arrays.copyOfRange(bytes, i, bytes.length))
+                    + decoder.flush();
+            assertEquals("Split at " + i, TEXT, received);
+        }
+    }
+}
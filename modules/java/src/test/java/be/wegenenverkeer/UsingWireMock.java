@@ -4,6 +4,7 @@ import be.wegenenverkeer.rxhttpclient.Builder;
 import com.github.tomakehurst.wiremock.common.FileSource;
 import com.github.tomakehurst.wiremock.common.SingleRootFileSource;
 import com.github.tomakehurst.wiremock.core.Options;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import org.junit.After;
 import org.junit.Before;
@@ -62,12 +63,15 @@ public class UsingWireMock< C extends Closeable> {
         return DEFAULT_REQUEST_TIME_OUT * 5;
     }
 
+    protected WireMockConfiguration wireMockOptions() {
+        return options()
+                .dynamicPort()
+                .fileSource(fileRoot())
+                .useChunkedTransferEncoding(Options.ChunkedEncodingPolicy.BODY_FILE);
+    }
+
     @Rule
-    public WireMockRule wireMockRule = new WireMockRule(options()
-            .dynamicPort()
-            .fileSource(fileRoot())
-            .useChunkedTransferEncoding(Options.ChunkedEncodingPolicy.BODY_FILE)
-    );
+    public WireMockRule wireMockRule = new WireMockRule(wireMockOptions());
 
     protected int port() {
         return wireMockRule.port();
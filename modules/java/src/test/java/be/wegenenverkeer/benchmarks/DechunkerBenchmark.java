@@ -0,0 +1,106 @@
+package be.wegenenverkeer.benchmarks;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.ByteDechunker;
+import be.wegenenverkeer.rxhttpclient.rxjava.Dechunker;
+import io.reactivex.rxjava3.core.Flowable;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the String-based {@link Dechunker} with the {@link ByteDechunker} on NDJSON feeds with small and large
+ * messages.
+ * <p>
+ * Each run dechunks a 256 MB in-memory feed, so no server is needed, but it takes a while and the timings only mean
+ * something relative to each other on the same machine. That is why it is checked-in as @Ignored.
+ */
+@Ignore("Benchmark, run manually")
+public class DechunkerBenchmark {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DechunkerBenchmark.class);
+
+    private final static Charset UTF8 = StandardCharsets.UTF_8;
+    private final static int CHUNK_SIZE = 8 * 1024;
+    private final static int FEED_SIZE = 256 * 1024 * 1024;
+    private final static int RUNS = 5;
+
+    @Test
+    public void benchmarkSmallMessages() {
+        benchmark(200);
+    }
+
+    @Test
+    public void benchmarkLargeMessages() {
+        benchmark(256 * 1024);
+    }
+
+    private void benchmark(int messageSize) {
+        List<byte[]> chunks = ndjsonFeed(messageSize);
+        long expected = chunks.stream().mapToLong(c -> c.length).sum() / (messageSize + 1);
+
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            long count = Flowable.fromIterable(chunks)
+                    .map(bytes -> new String(bytes, UTF8))
+                    .lift(new Dechunker("\n"))
+                    .count()
+                    .blockingGet();
+            long stringMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(expected, count);
+
+            start = System.nanoTime();
+            count = Flowable.fromIterable(chunks)
+                    .compose(new ByteDechunker("\n".getBytes(UTF8)))
+                    .map(bytes -> new String(bytes, UTF8))
+                    .count()
+                    .blockingGet();
+            long byteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(expected, count);
+
+            LOGGER.info("Message size {} bytes, run {}: Dechunker {} ms, ByteDechunker {} ms",
+                    messageSize, run, stringMillis, byteMillis);
+        }
+    }
+
+    /**
+     * Generates a feed of NDJSON messages of the given size (excluding the newline), split in chunks of CHUNK_SIZE bytes.
+     */
+    private List<byte[]> ndjsonFeed(int messageSize) {
+        byte[] message = new byte[messageSize + 1];
+        Arrays.fill(message, (byte) 'x');
+        byte[] prefix = "{\"value\":\"".getBytes(UTF8);
+        System.arraycopy(prefix, 0, message, 0, prefix.length);
+        message[messageSize - 2] = '"';
+        message[messageSize - 1] = '}';
+        message[messageSize] = '\n';
+
+        List<byte[]> chunks = new ArrayList<>();
+        int messages = FEED_SIZE / message.length;
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int pos = 0;
+        for (int m = 0; m < messages; m++) {
+            for (byte b : message) {
+                chunk[pos++] = b;
+                if (pos == CHUNK_SIZE) {
+                    chunks.add(chunk);
+                    chunk = new byte[CHUNK_SIZE];
+                    pos = 0;
+                }
+            }
+        }
+        if (pos > 0) {
+            chunks.add(Arrays.copyOf(chunk, pos));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,213 @@
+package be.wegenenverkeer.benchmarks;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.ServerResponseBodyPart;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.common.SingleRootFileSource;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.reactivex.rxjava3.core.Emitter;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Notification;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseStatus;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+/**
+ * Measures peak thread count and throughput for many concurrent, long-lived streaming responses.
+ * <p>
+ * Both implementations are measured in the same run, against the same server, so that the results can be compared
+ * directly:
+ * <ul>
+ *     <li>{@code executeObservably}, which is pushed by the Netty I/O threads and needs no scheduler;</li>
+ *     <li>a copy of the former {@code Flowable.generate} implementation, which blocks the subscribing thread while
+ *     waiting for data. It needs {@code subscribeOn(Schedulers.io())}, otherwise the streams would be consumed one
+ *     after another.</li>
+ * </ul>
+ * <p>
+ * A run keeps a thousand connections open against WireMock for several seconds per implementation, which is
+ * too heavy for a regular build. That is why it is checked-in as @Ignored.
+ */
+@Ignore("Benchmark, run manually")
+public class StreamingBenchmark extends UsingWireMockRxJava {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(StreamingBenchmark.class);
+
+    private final static int NUM_STREAMS = 1000;
+    private final static int LINES_PER_STREAM = 10_000;
+    private final static int CHUNKS_PER_STREAM = 100;
+    private final static int STREAM_DURATION_MILLIS = 10_000;
+
+    private final File tmp;
+
+    public StreamingBenchmark() {
+        tmp = generateWireMockTestFile(LINES_PER_STREAM);
+    }
+
+    @Override
+    protected WireMockConfiguration wireMockOptions() {
+        return super.wireMockOptions().containerThreads(NUM_STREAMS + 50);
+    }
+
+    @Override
+    protected int getRequestTimeOut() {
+        return STREAM_DURATION_MILLIS * 6;
+    }
+
+    @Override
+    protected FileSource fileRoot() {
+        return new SingleRootFileSource(getWireMockRootDir());
+    }
+
+    @Before
+    @Override
+    public void setUpAndStartServer() {
+        client = getBuilder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setMaxConnections(NUM_STREAMS + 10)
+                .setAccept("application/json")
+                .setBaseUrl("http://localhost:" + port())
+                .build();
+    }
+
+    @Test
+    public void benchmarkConcurrentLongLivedStreams() {
+        stubFor(get(urlPathEqualTo("/stream"))
+                .willReturn(aResponse()
+                        .withBodyFile(tmp.getName())
+                        .withChunkedDribbleDelay(CHUNKS_PER_STREAM, STREAM_DURATION_MILLIS)));
+
+        ClientRequest request = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/stream").build();
+
+        measure("generate (legacy, subscribeOn io)", i -> legacyBodyPartSizes(request).subscribeOn(Schedulers.io()));
+        measure("executeObservably", i -> client.executeObservably(request)
+                .filter(el -> el instanceof ServerResponseBodyPart)
+                .map(el -> (long) ((ServerResponseBodyPart) el).getBodyPartBytes().length));
+    }
+
+    private void measure(String name, Function<Integer, Flowable<Long>> stream) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        long start = System.nanoTime();
+        TestSubscriber<Long> subscriber = Flowable.range(0, NUM_STREAMS)
+                .flatMap(stream::apply, NUM_STREAMS)
+                .reduce(0L, Long::sum)
+                .toFlowable()
+                .test();
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        subscriber.assertNoErrors();
+        subscriber.assertComplete();
+        long bytes = subscriber.values().get(0);
+
+        LOGGER.info(String.format("%s - streams: %d, bytes: %d, elapsed: %d ms, throughput: %.2f MB/s",
+                name, NUM_STREAMS, bytes, elapsedMillis, bytes / 1024.0 / 1024.0 / (elapsedMillis / 1000.0)));
+        LOGGER.info(String.format("%s - threads before: %d, peak threads during benchmark: %d",
+                name, threadsBefore, threads.getPeakThreadCount()));
+    }
+
+    /**
+     * The former {@code executeObservably}, reduced to the sizes of the body parts.
+     */
+    private Flowable<Long> legacyBodyPartSizes(ClientRequest request) {
+        return Flowable.generate(
+                () -> {
+                    LegacyQueueingAsyncHandler handler = new LegacyQueueingAsyncHandler();
+                    client.inner().executeRequest(request.unwrap(), handler);
+                    return handler;
+                },
+                (handler, emitter) -> {
+                    handler.emitTo(emitter);
+                    return handler;
+                },
+                LegacyQueueingAsyncHandler::cancel
+        );
+    }
+
+    /**
+     * Copy of the former blocking-queue handler: the I/O thread blocks when the queue is full, the subscribing thread
+     * blocks when the queue is empty.
+     */
+    private static class LegacyQueueingAsyncHandler implements AsyncHandler<Boolean> {
+
+        final private BlockingQueue<Notification<Long>> queue = new ArrayBlockingQueue<>(1024);
+        final private AtomicBoolean isCancelled = new AtomicBoolean(false);
+
+        @Override
+        public State onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            return State.CONTINUE;
+        }
+
+        @Override
+        public State onHeadersReceived(HttpHeaders headers) throws Exception {
+            return State.CONTINUE;
+        }
+
+        @Override
+        public State onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            if (isCancelled.get()) {
+                return State.ABORT;
+            }
+            queue.put(Notification.createOnNext((long) bodyPart.getBodyPartBytes().length));
+            return State.CONTINUE;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            try {
+                queue.put(Notification.createOnError(t));
+            } catch (InterruptedException e) {
+                LOGGER.error("Interrupt exception when trying to enqueue throwable", t);
+            }
+        }
+
+        @Override
+        public Boolean onCompleted() throws Exception {
+            queue.put(Notification.createOnComplete());
+            return true;
+        }
+
+        void cancel() {
+            isCancelled.set(true);
+            queue.clear();
+        }
+
+        void emitTo(Emitter<Long> emitter) {
+            try {
+                Notification<Long> n = queue.take();
+                if (n.isOnNext()) {
+                    emitter.onNext(n.getValue());
+                } else if (n.isOnComplete()) {
+                    emitter.onComplete();
+                } else {
+                    emitter.onError(n.getError());
+                }
+            } catch (InterruptedException e) {
+                emitter.onError(e);
+            }
+        }
+    }
+
+}
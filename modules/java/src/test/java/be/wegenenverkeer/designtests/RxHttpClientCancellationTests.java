@@ -0,0 +1,158 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.CancellationPolicy;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import be.wegenenverkeer.rxhttpclient.ServerResponseElement;
+import be.wegenenverkeer.rxhttpclient.rxjava.RxJavaHttpClient;
+import io.reactivex.rxjava3.plugins.RxJavaPlugins;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.asynchttpclient.ClientStats;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that cancelling a request aborts or drains its connection.
+ */
+public class RxHttpClientCancellationTests extends UsingWireMockRxJava {
+
+    @Test
+    public void testCancelledFutureAbortsRequest() throws InterruptedException {
+        stubSlowResponse();
+
+        CompletableFuture<String> future = client.execute(request(client), ServerResponse::getResponseBody);
+        awaitStats(client, stats -> stats.getTotalActiveConnectionCount() == 1);
+        future.cancel(false);
+
+        awaitStats(client, stats -> stats.getTotalConnectionCount() == 0);
+    }
+
+    @Test
+    public void testTimeoutAbortsRequest() throws InterruptedException {
+        stubSlowResponse();
+
+        client.execute(request(client), ServerResponse::getResponseBody).orTimeout(200, TimeUnit.MILLISECONDS);
+
+        awaitStats(client, stats -> stats.getTotalActiveConnectionCount() == 1);
+        awaitStats(client, stats -> stats.getTotalConnectionCount() == 0);
+    }
+
+    @Test
+    public void testCancelledSubscriptionAbortsRequest() throws InterruptedException {
+        stubSlowResponse();
+
+        TestSubscriber<String> sub = client.executeToCompletion(request(client), ServerResponse::getResponseBody).test();
+        awaitStats(client, stats -> stats.getTotalActiveConnectionCount() == 1);
+        sub.cancel();
+
+        awaitStats(client, stats -> stats.getTotalConnectionCount() == 0);
+    }
+
+    @Test
+    public void testDrainedConnectionIsReused() throws InterruptedException {
+        stubDribbledResponse();
+        try (RxJavaHttpClient draining = new RxJavaHttpClient.Builder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setCancellationPolicy(CancellationPolicy.DRAIN)
+                .setBaseUrl("http://localhost:" + port())
+                .build()) {
+
+            CompletableFuture<String> future = draining.execute(request(draining), ServerResponse::getResponseBody);
+            awaitStats(draining, stats -> stats.getTotalActiveConnectionCount() == 1);
+            future.cancel(false);
+
+            awaitStats(draining, stats -> stats.getTotalIdleConnectionCount() == 1);
+            assertEquals(1, draining.getCancellationStats().getDrained());
+        }
+    }
+
+    @Test
+    public void testCancelledStreamClosesConnection() throws InterruptedException {
+        stubDribbledResponse();
+
+        TestSubscriber<ServerResponseElement> sub = client.executeObservably(request(client)).take(3).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertValueCount(3);
+        awaitStats(client, stats -> stats.getTotalConnectionCount() == 0);
+        assertEquals(1, client.getCancellationStats().getAborted());
+    }
+
+    @Test
+    public void testStreamCancelledFromOtherThreadSignalsNoError() throws InterruptedException {
+        stubSlowResponse();
+        List<Throwable> undeliverable = new CopyOnWriteArrayList<>();
+        RxJavaPlugins.setErrorHandler(undeliverable::add);
+        try {
+            TestSubscriber<ServerResponseElement> sub = client.executeObservably(request(client)).test();
+            awaitStats(client, stats -> stats.getTotalActiveConnectionCount() == 1);
+
+            Thread canceller = new Thread(sub::cancel);
+            canceller.start();
+            canceller.join(getTimeOut());
+
+            awaitStats(client, stats -> stats.getTotalConnectionCount() == 0);
+            sub.assertNoErrors();
+            assertTrue("Undeliverable errors: " + undeliverable, undeliverable.isEmpty());
+            assertEquals(1, client.getCancellationStats().getAborted());
+        } finally {
+            RxJavaPlugins.reset();
+        }
+    }
+
+    @Test
+    public void testCancelledStreamIsDrained() throws InterruptedException {
+        stubDribbledResponse();
+        try (RxJavaHttpClient draining = new RxJavaHttpClient.Builder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setCancellationPolicy(CancellationPolicy.DRAIN)
+                .setBaseUrl("http://localhost:" + port())
+                .build()) {
+
+            TestSubscriber<ServerResponseElement> sub = draining.executeObservably(request(draining)).take(3).test();
+
+            sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+            sub.assertValueCount(3);
+            awaitStats(draining, stats -> stats.getTotalIdleConnectionCount() == 1);
+            assertEquals(1, draining.getCancellationStats().getDrained());
+            assertEquals(0, draining.getCancellationStats().getAborted());
+        }
+    }
+
+    private void stubDribbledResponse() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200)
+                        .withBody("x".repeat(1000))
+                        .withChunkedDribbleDelay(10, 1000)));
+    }
+
+    private void stubSlowResponse() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody("[]").withFixedDelay(getRequestTimeOut() - 500)));
+    }
+
+    private void awaitStats(RxJavaHttpClient client, Predicate<ClientStats> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + getTimeOut();
+        while (!condition.test(client.inner().getClientStats())) {
+            assertTrue("Timeout waiting for " + client.inner().getClientStats(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ClientRequest request(RxJavaHttpClient client) {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/contacts")
+                .build();
+    }
+}
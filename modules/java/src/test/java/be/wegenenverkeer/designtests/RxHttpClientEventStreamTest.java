@@ -0,0 +1,90 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.ServerSentEvent;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+/**
+ * Tests for consuming a text/event-stream response, including reconnection with the Last-Event-ID header.
+ */
+public class RxHttpClientEventStreamTest extends UsingWireMockRxJava {
+
+    @Test
+    public void testReconnectsWithLastEventIdWithoutRedelivery() {
+        stubFor(get(urlPathEqualTo("/events"))
+                .withHeader("Accept", equalTo("text/event-stream"))
+                .withHeader("Last-Event-ID", absent())
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody("retry: 10\nid: 1\ndata: one\n\nid: 2\ndata: two\n\n")));
+        stubFor(get(urlPathEqualTo("/events"))
+                .withHeader("Last-Event-ID", equalTo("2"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody("id: 2\ndata: two\n\nid: 3\nevent: last\ndata: three\n\n")));
+        stubFor(get(urlPathEqualTo("/events"))
+                .withHeader("Last-Event-ID", equalTo("3"))
+                .willReturn(aResponse().withStatus(204)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/events")
+                .build();
+
+        TestSubscriber<String> subscriber = client.executeEventStream(request)
+                .map(ServerSentEvent::getData)
+                .test();
+
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertValues("one", "two", "three");
+        subscriber.assertComplete();
+        verify(3, getRequestedFor(urlPathEqualTo("/events")));
+    }
+
+    @Test
+    public void testHttpErrorsAreNotRetried() {
+        stubFor(get(urlPathEqualTo("/events"))
+                .willReturn(aResponse().withStatus(404)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/events")
+                .build();
+
+        TestSubscriber<ServerSentEvent> subscriber = client.executeEventStream(request, 10, TimeUnit.MILLISECONDS).test();
+
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        subscriber.assertError(HttpClientError.class);
+        verify(1, getRequestedFor(urlPathEqualTo("/events")));
+    }
+
+    @Test
+    public void testResponsesThatAreNotEventStreamsFail() {
+        stubFor(get(urlPathEqualTo("/events"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{}")));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/events")
+                .build();
+
+        TestSubscriber<ServerSentEvent> subscriber = client.executeEventStream(request, 10, TimeUnit.MILLISECONDS).test();
+
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        subscriber.assertError(IllegalStateException.class);
+        verify(1, getRequestedFor(urlPathEqualTo("/events")));
+    }
+}
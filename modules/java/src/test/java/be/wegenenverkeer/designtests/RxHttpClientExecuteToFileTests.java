@@ -0,0 +1,100 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.rxjava.FileWriteOptions;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for writing response bodies to files.
+ */
+public class RxHttpClientExecuteToFileTests extends UsingWireMockRxJava {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteBodyToFile() throws IOException {
+        byte[] body = new byte[1024 * 1024];
+        new Random().nextBytes(body);
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(200).withBody(body)));
+        Path target = folder.getRoot().toPath().resolve("extract.bin");
+        AtomicLong progress = new AtomicLong();
+        AtomicLong length = new AtomicLong();
+
+        TestObserver<Long> sub = client.executeToFile(request(), target, FileWriteOptions.DEFAULT
+                .withFsync(true)
+                .withProgressListener((written, contentLength) -> {
+                    progress.set(written);
+                    length.set(contentLength);
+                }))
+                .test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues((long) body.length);
+        assertArrayEquals(body, Files.readAllBytes(target));
+        assertEquals(body.length, progress.get());
+        assertEquals(body.length, length.get());
+    }
+
+    @Test
+    public void testAtomicMoveReplacesTarget() throws IOException {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(200).withBody("new content")));
+        Path target = folder.newFile("extract.txt").toPath();
+        Files.write(target, "old content".getBytes(StandardCharsets.UTF_8));
+
+        TestObserver<Long> sub = client.executeToFile(request(), target, FileWriteOptions.DEFAULT.withAtomicMove(true)).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        assertEquals("new content", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void testFailedAtomicWriteLeavesTargetUntouched() throws IOException {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(404)));
+        Path target = folder.newFile("extract.txt").toPath();
+        Files.write(target, "old content".getBytes(StandardCharsets.UTF_8));
+
+        TestObserver<Long> sub = client.executeToFile(request(), target, FileWriteOptions.DEFAULT.withAtomicMove(true)).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(HttpClientError.class);
+        assertEquals("old content", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        assertEquals("temporary file is deleted", 1, countFiles());
+    }
+
+    private int countFiles() {
+        File[] files = folder.getRoot().listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    private ClientRequest request() {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/extract")
+                .build();
+    }
+}
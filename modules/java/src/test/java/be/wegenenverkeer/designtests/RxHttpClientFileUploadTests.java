@@ -0,0 +1,122 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.DeflatingBodyGenerator;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+/**
+ * Tests for uploading (regions of) files.
+ */
+public class RxHttpClientFileUploadTests extends UsingWireMockRxJava {
+
+    private static final String CONTENT = "first,second,third";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = folder.newFile("upload.txt");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUploadFileRegion() {
+        stubFor(put(urlPathEqualTo("/upload/1"))
+                .withRequestBody(equalTo("second"))
+                .willReturn(aResponse().withStatus(201)));
+
+        TestSubscriber<Integer> sub = client.executeToCompletion(regionRequest(1, 6, 6), ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201);
+        verify(putRequestedFor(urlPathEqualTo("/upload/1")).withHeader("Content-Length", equalTo("6")));
+    }
+
+    @Test
+    public void testUploadRegionsConcurrently() {
+        stubFor(put(urlPathEqualTo("/upload/0")).withRequestBody(equalTo("first,"))
+                .willReturn(aResponse().withStatus(201)));
+        stubFor(put(urlPathEqualTo("/upload/1")).withRequestBody(equalTo("second,"))
+                .willReturn(aResponse().withStatus(201)));
+        stubFor(put(urlPathEqualTo("/upload/2")).withRequestBody(equalTo("third"))
+                .willReturn(aResponse().withStatus(201)));
+
+        TestSubscriber<Integer> sub = Flowable.just(regionRequest(0, 0, 6), regionRequest(1, 6, 7), regionRequest(2, 13, 5))
+                .flatMap(request -> client.executeToCompletion(request, ServerResponse::getStatusCode).toFlowable())
+                .test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201, 201, 201);
+    }
+
+    @Test
+    public void testUploadCompressedFileRegion() {
+        stubFor(put(urlPathEqualTo("/upload/1"))
+                .willReturn(aResponse().withStatus(201)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("PUT")
+                .setUrlRelativetoBase("/upload/1")
+                .setBody(file, 6, 6)
+                .setBodyCompression(DeflatingBodyGenerator.Encoding.GZIP)
+                .build();
+        TestSubscriber<Integer> sub = client.executeToCompletion(request, ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201);
+        verify(putRequestedFor(urlPathEqualTo("/upload/1")).withHeader("Content-Encoding", equalTo("gzip")));
+    }
+
+    @Test
+    public void testUploadCompressedFile() {
+        stubFor(put(urlPathEqualTo("/upload"))
+                .willReturn(aResponse().withStatus(201)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("PUT")
+                .setUrlRelativetoBase("/upload")
+                .setBody(file)
+                .setBodyCompression(DeflatingBodyGenerator.Encoding.GZIP)
+                .build();
+        TestSubscriber<Integer> sub = client.executeToCompletion(request, ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201);
+        verify(putRequestedFor(urlPathEqualTo("/upload")).withHeader("Content-Encoding", equalTo("gzip")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionOutsideFileIsRejected() {
+        client.requestBuilder().setBody(file, 10, CONTENT.length());
+    }
+
+    private ClientRequest regionRequest(int part, long offset, long length) {
+        return client.requestBuilder()
+                .setMethod("PUT")
+                .setUrlRelativetoBase("/upload/" + part)
+                .setBody(file, offset, length)
+                .build();
+    }
+}
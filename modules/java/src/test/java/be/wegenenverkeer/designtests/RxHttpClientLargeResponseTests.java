@@ -0,0 +1,136 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.ResponseTooLargeException;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for complete responses with bodies that exceed the in-memory or maximum response size.
+ */
+public class RxHttpClientLargeResponseTests extends UsingWireMockRxJava {
+
+    private static final int MAX_IN_MEMORY = 1024;
+    private static final int MAX_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    @Override
+    public void setUpAndStartServer() {
+        client = getBuilder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setMaxInMemoryResponseSize(MAX_IN_MEMORY)
+                .setMaxResponseSize(MAX_SIZE)
+                .setResponseSpillDirectory(folder.getRoot().toPath())
+                .setAccept("application/json")
+                .setBaseUrl("http://localhost:" + port())
+                .build();
+    }
+
+    @Test
+    public void testSmallBodyInMemory() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody("[]")));
+
+        TestSubscriber<String> sub = client.executeToCompletion(request(), ServerResponse::getResponseBody).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues("[]");
+    }
+
+    @Test
+    public void testLargeBodySpilledToDisk() throws Exception {
+        byte[] body = new byte[16 * 1024];
+        new Random().nextBytes(body);
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody(body)));
+
+        ServerResponse response = client.execute(request(), Function.identity()).get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+        assertArrayEquals(body, response.getResponseBodyAsBytes());
+        try (InputStream in = response.getResponseBodyAsStream()) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+        ByteBuffer buffer = response.getResponseBodyAsByteBuffer();
+        assertEquals(ByteBuffer.wrap(body), buffer);
+        assertEquals("temporary file is kept until the response is closed", 1, countFiles());
+
+        response.close();
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testSpilledBodyIsRemovedAfterTransform() throws Exception {
+        byte[] body = new byte[16 * 1024];
+        new Random().nextBytes(body);
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody(body)));
+
+        int length = client.execute(request(), r -> r.getResponseBodyAsBytes().length).get(getTimeOut(), TimeUnit.MILLISECONDS);
+        assertEquals(body.length, length);
+        assertEquals(0, countFiles());
+
+        TestSubscriber<Integer> sub = client.executeToCompletion(request(), r -> r.getResponseBodyAsBytes().length).test();
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertValues(body.length);
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testTooLargeBodyIsAborted() throws Exception {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody(new byte[MAX_SIZE + 1])));
+
+        try {
+            client.execute(request(), ServerResponse::getResponseBodyAsBytes).get(getTimeOut(), TimeUnit.MILLISECONDS);
+            fail("Expected a ResponseTooLargeException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ResponseTooLargeException);
+            assertEquals(MAX_SIZE + 1, ((ResponseTooLargeException) e.getCause()).getSize());
+        }
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testTooLargeBodyFailsFlowable() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody(new byte[MAX_SIZE + 1])));
+
+        TestSubscriber<byte[]> sub = client.executeToCompletion(request(), ServerResponse::getResponseBodyAsBytes).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(ResponseTooLargeException.class);
+    }
+
+    private int countFiles() {
+        File[] files = folder.getRoot().listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    private ClientRequest request() {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/contacts")
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.rxjava.ParallelDownloader;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for downloads of byte ranges over several connections.
+ */
+public class RxHttpClientParallelDownloadTests extends UsingWireMockRxJava {
+
+    private static final String CONTENT = "aaaaaaaaaabbbbbbbbbbccccc";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path target;
+    private ParallelDownloader downloader;
+
+    @Before
+    public void setUpDownload() throws IOException {
+        target = folder.newFile("download.txt").toPath();
+        downloader = ParallelDownloader.builder(client)
+                .setRangeSize(10)
+                .setParallelism(3)
+                .setMaxRetries(2)
+                .build();
+    }
+
+    @Test
+    public void testDownloadRanges() throws IOException {
+        stubRange(0, 9);
+        stubRange(10, 19);
+        stubRange(20, 24);
+
+        assertDownloaded(downloader.download(request(), target).test());
+        verify(getRequestedFor(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=10-19"))
+                .withHeader("If-Match", equalTo("\"v1\"")));
+    }
+
+    @Test
+    public void testDownloadWithoutRangeSupport() throws IOException {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(200).withBody(CONTENT)));
+
+        assertDownloaded(client.downloadParallel(request(), target).test());
+        verify(1, getRequestedFor(urlPathEqualTo("/extract")));
+    }
+
+    @Test
+    public void testFailedRangeIsRetried() throws IOException {
+        stubRange(0, 9);
+        stubRange(20, 24);
+        stubFor(get(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=10-19"))
+                .inScenario("retry").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("recovered"));
+        stubFor(get(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=10-19"))
+                .inScenario("retry").whenScenarioStateIs("recovered")
+                .willReturn(rangeResponse(10, 19)));
+
+        assertDownloaded(downloader.download(request(), target).test());
+        verify(2, getRequestedFor(urlPathEqualTo("/extract")).withHeader("Range", equalTo("bytes=10-19")));
+        verify(1, getRequestedFor(urlPathEqualTo("/extract")).withHeader("Range", equalTo("bytes=20-24")));
+    }
+
+    @Test
+    public void testDownloadEmptyResource() throws IOException {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(416).withHeader("Content-Range", "bytes */0")));
+
+        TestObserver<Long> sub = downloader.download(request(), target).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(0L);
+        assertEquals(0, Files.size(target));
+    }
+
+    @Test
+    public void testUnexpectedContentRangeFails() {
+        stubRange(0, 9);
+        stubRange(20, 24);
+        stubFor(get(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=10-19"))
+                .willReturn(rangeResponse(0, 9)));
+
+        TestObserver<Long> sub = downloader.download(request(), target).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(IllegalStateException.class);
+        verify(1, getRequestedFor(urlPathEqualTo("/extract")).withHeader("Range", equalTo("bytes=10-19")));
+    }
+
+    private void assertDownloaded(TestObserver<Long> sub) throws IOException {
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues((long) CONTENT.length());
+        assertEquals(CONTENT, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    private ClientRequest request() {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/extract")
+                .build();
+    }
+
+    private void stubRange(int start, int end) {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=" + start + "-" + end))
+                .willReturn(rangeResponse(start, end)));
+    }
+
+    private static ResponseDefinitionBuilder rangeResponse(int start, int end) {
+        return aResponse().withStatus(206)
+                .withHeader("ETag", "\"v1\"")
+                .withHeader("Content-Range", "bytes " + start + "-" + end + "/" + CONTENT.length())
+                .withBody(CONTENT.substring(start, end + 1));
+    }
+}
@@ -0,0 +1,113 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.rxjava.ResumableDownloader;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for downloads that resume from a checkpoint.
+ */
+public class RxHttpClientResumableDownloadTests extends UsingWireMockRxJava {
+
+    private static final String CONTENT = "aaaaaaaaaabbbbbbbbbbccccc";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path target;
+    private ResumableDownloader downloader;
+
+    @Before
+    public void setUpDownload() throws IOException {
+        target = folder.newFile("download.txt").toPath();
+        downloader = ResumableDownloader.builder(client)
+                .setRetryDelay(10, TimeUnit.MILLISECONDS)
+                .setMaxRetries(2)
+                .build();
+    }
+
+    @Test
+    public void testDownloadResumesFromCheckpoint() throws IOException {
+        writePartialDownload("\"v1\"");
+        stubFor(get(urlPathEqualTo("/extract"))
+                .withHeader("Range", equalTo("bytes=10-"))
+                .withHeader("If-Range", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(206)
+                        .withHeader("ETag", "\"v1\"")
+                        .withHeader("Content-Range", "bytes 10-24/25")
+                        .withBody(CONTENT.substring(10))));
+
+        assertDownloaded(downloader.download(request(), target).test());
+    }
+
+    @Test
+    public void testDownloadRestartsWhenResourceHasChanged() throws IOException {
+        writePartialDownload("\"v0\"");
+        //If-Range doesn't match, so the server sends the whole (new) resource
+        stubFor(get(urlPathEqualTo("/extract"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(CONTENT)));
+
+        assertDownloaded(downloader.download(request(), target).test());
+        verify(getRequestedFor(urlPathEqualTo("/extract")).withHeader("If-Range", equalTo("\"v0\"")));
+    }
+
+    @Test
+    public void testFailedDownloadIsRetried() throws IOException {
+        stubFor(get(urlPathEqualTo("/extract"))
+                .inScenario("retry").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("recovered"));
+        stubFor(get(urlPathEqualTo("/extract"))
+                .inScenario("retry").whenScenarioStateIs("recovered")
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"v1\"").withBody(CONTENT)));
+
+        assertDownloaded(client.downloadResumable(request(), target).test());
+        verify(2, getRequestedFor(urlPathEqualTo("/extract")));
+    }
+
+    private void writePartialDownload(String validator) throws IOException {
+        Files.write(target, CONTENT.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("url", request().getUrl());
+        checkpoint.setProperty("validator", validator);
+        checkpoint.setProperty("bytes", "10");
+        try (OutputStream out = Files.newOutputStream(ResumableDownloader.checkpointPath(target))) {
+            checkpoint.store(out, null);
+        }
+    }
+
+    private void assertDownloaded(TestObserver<Long> sub) throws IOException {
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues((long) CONTENT.length());
+        assertEquals(CONTENT, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(ResumableDownloader.checkpointPath(target)));
+    }
+
+    private ClientRequest request() {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/extract")
+                .build();
+    }
+}
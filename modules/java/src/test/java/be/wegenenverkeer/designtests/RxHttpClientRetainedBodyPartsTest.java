@@ -0,0 +1,114 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.RetainedServerResponseBodyPart;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.common.SingleRootFileSource;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests streaming with retained body parts on a client with lazy response body parts.
+ */
+public class RxHttpClientRetainedBodyPartsTest extends UsingWireMockRxJava {
+
+    private final static int SIZE = 100_000;
+    private final File tmp;
+
+    public RxHttpClientRetainedBodyPartsTest() {
+        tmp = generateWireMockTestFile(SIZE);
+    }
+
+    @Override
+    protected FileSource fileRoot() {
+        return new SingleRootFileSource(getWireMockRootDir());
+    }
+
+    @Before
+    @Override
+    public void setUpAndStartServer() {
+        client = getBuilder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setMaxConnections(3)
+                .setLazyResponseBodyParts(true)
+                .setAccept("application/json")
+                .setBaseUrl("http://localhost:" + port())
+                .build();
+        stubFor(get(urlPathEqualTo("/large")).willReturn(aResponse().withBodyFile(tmp.getName())));
+    }
+
+    @Test
+    public void testRetainedBodyParts() {
+        ClientRequest request = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/large").build();
+
+        TestSubscriber<Integer> subscriber = client.executeObservablyRetained(request)
+                .ofType(RetainedServerResponseBodyPart.class)
+                .map(part -> {
+                    try (part) {
+                        ByteBuffer view = part.getBodyByteBuffer();
+                        assertTrue(view.isReadOnly());
+                        return view.remaining();
+                    }
+                })
+                .test();
+
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertComplete();
+        assertEquals(tmp.length(), subscriber.values().stream().mapToLong(Integer::longValue).sum());
+    }
+
+    @Test
+    public void testReleasedBodyPartCannotBeRead() {
+        ClientRequest request = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/large").build();
+
+        RetainedServerResponseBodyPart part = client.executeObservablyRetained(request)
+                .ofType(RetainedServerResponseBodyPart.class)
+                .blockingFirst();
+
+        try {
+            part.getBodyByteBuffer().put((byte) 0);
+            fail("View must be read-only");
+        } catch (ReadOnlyBufferException e) {
+            //expected
+        }
+
+        part.release();
+        part.release();
+        assertTrue(part.isReleased());
+        try {
+            part.getBodyByteBuffer();
+            fail("Released body part must not be readable");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testCompleteResponseWithLazyBodyParts() {
+        ClientRequest request = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/large").build();
+
+        Flowable<Integer> flowable = client.executeToCompletion(request, ServerResponse::getResponseBodyAsBytes)
+                .map(bytes -> bytes.length);
+        TestSubscriber<Integer> subscriber = flowable.test();
+
+        subscriber.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertValue((int) tmp.length());
+    }
+
+}
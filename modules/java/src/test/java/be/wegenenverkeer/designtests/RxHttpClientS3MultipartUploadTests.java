@@ -0,0 +1,152 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.rxjava.S3MultipartUploader;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+/**
+ * Tests the multipart upload against a WireMock stand-in for S3.
+ */
+public class RxHttpClientS3MultipartUploadTests extends UsingWireMockRxJava {
+
+    private static final String PATH = "/bucket/key";
+    private static final String CONTENT = "aaaaaaaaaabbbbbbbbbbccccc";
+    private static final String COMPLETE_BODY = "<CompleteMultipartUpload>"
+            + "<Part><PartNumber>1</PartNumber><ETag>\"etag-1\"</ETag></Part>"
+            + "<Part><PartNumber>2</PartNumber><ETag>\"etag-2\"</ETag></Part>"
+            + "<Part><PartNumber>3</PartNumber><ETag>\"etag-3\"</ETag></Part>"
+            + "</CompleteMultipartUpload>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private S3MultipartUploader uploader;
+
+    @Before
+    public void setUpS3() {
+        uploader = S3MultipartUploader.builder(client)
+                .setPartSize(10)
+                .setParallelism(2)
+                .setMaxBufferedBytes(40)
+                .setMaxRetries(2)
+                .build();
+
+        stubFor(post(urlPathEqualTo(PATH))
+                .withQueryParam("uploads", matching(".*"))
+                .willReturn(aResponse().withStatus(200)
+                        .withBody("<InitiateMultipartUploadResult><Bucket>bucket</Bucket><Key>key</Key>"
+                                + "<UploadId>upload-1</UploadId></InitiateMultipartUploadResult>")));
+        stubFor(post(urlPathEqualTo(PATH))
+                .withQueryParam("uploadId", equalTo("upload-1"))
+                .withRequestBody(equalTo(COMPLETE_BODY))
+                .willReturn(aResponse().withStatus(200)
+                        .withBody("<CompleteMultipartUploadResult><ETag>\"final\"</ETag></CompleteMultipartUploadResult>")));
+        stubFor(delete(urlPathEqualTo(PATH))
+                .withQueryParam("uploadId", equalTo("upload-1"))
+                .willReturn(aResponse().withStatus(204)));
+        stubPart(1, "aaaaaaaaaa");
+        stubPart(3, "ccccc");
+    }
+
+    @Test
+    public void testUploadFlowable() throws Exception {
+        stubPart(2, "bbbbbbbbbb");
+
+        TestObserver<String> sub = uploader.upload(PATH, chunks()).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues("\"final\"");
+        verify(putRequestedFor(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo("1"))
+                .withHeader("x-amz-content-sha256", equalTo(sha256("aaaaaaaaaa"))));
+        verify(0, deleteRequestedFor(urlPathEqualTo(PATH)));
+    }
+
+    @Test
+    public void testUploadFile() throws Exception {
+        stubPart(2, "bbbbbbbbbb");
+        File file = folder.newFile("upload.txt");
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        TestObserver<String> sub = uploader.upload(PATH, file).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues("\"final\"");
+        verify(putRequestedFor(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo("3"))
+                .withHeader("x-amz-content-sha256", equalTo(sha256("ccccc"))));
+    }
+
+    @Test
+    public void testFailedPartIsRetried() {
+        stubFor(put(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo("2"))
+                .inScenario("retry").whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("recovered"));
+        stubFor(put(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo("2"))
+                .inScenario("retry").whenScenarioStateIs("recovered")
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"etag-2\"")));
+
+        TestObserver<String> sub = uploader.upload(PATH, chunks()).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues("\"final\"");
+        verify(2, putRequestedFor(urlPathEqualTo(PATH)).withQueryParam("partNumber", equalTo("2")));
+        verify(1, putRequestedFor(urlPathEqualTo(PATH)).withQueryParam("partNumber", equalTo("1")));
+    }
+
+    @Test
+    public void testUploadIsAbortedWhenPartFails() {
+        stubFor(put(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo("2"))
+                .willReturn(aResponse().withStatus(400)));
+
+        TestObserver<String> sub = uploader.upload(PATH, chunks()).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(HttpClientError.class);
+        verify(1, putRequestedFor(urlPathEqualTo(PATH)).withQueryParam("partNumber", equalTo("2")));
+        verify(deleteRequestedFor(urlPathEqualTo(PATH)).withQueryParam("uploadId", equalTo("upload-1")));
+        verify(0, postRequestedFor(urlPathEqualTo(PATH)).withQueryParam("uploadId", equalTo("upload-1")));
+    }
+
+    private static Flowable<byte[]> chunks() {
+        //chunks that don't line up with the part boundaries
+        return Flowable.just("aaaaaaa", "aaabbbbbbb", "bbbcc", "ccc")
+                .map(s -> s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void stubPart(int number, String content) {
+        stubFor(put(urlPathEqualTo(PATH))
+                .withQueryParam("partNumber", equalTo(Integer.toString(number)))
+                .withQueryParam("uploadId", equalTo("upload-1"))
+                .withRequestBody(equalTo(content))
+                .willReturn(aResponse().withStatus(200).withHeader("ETag", "\"etag-" + number + "\"")));
+    }
+
+    private static String sha256(String content) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return Hex.encodeHexString(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
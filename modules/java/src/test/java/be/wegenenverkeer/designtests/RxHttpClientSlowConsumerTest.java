@@ -0,0 +1,103 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.ServerResponseBodyPart;
+import be.wegenenverkeer.rxhttpclient.ServerResponseElement;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.common.SingleRootFileSource;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that a slow subscriber on a streaming response does not block the other requests that share
+ * the Netty I/O threads.
+ */
+public class RxHttpClientSlowConsumerTest extends UsingWireMockRxJava {
+
+    private final static int SIZE = 1_000_000;
+    private final static int NUM_STREAMS = 300;
+    private final File tmp;
+
+    public RxHttpClientSlowConsumerTest() {
+        tmp = generateWireMockTestFile(SIZE);
+    }
+
+    @Override
+    protected int getRequestTimeOut() {
+        return 60_000;
+    }
+
+    @Override
+    protected FileSource fileRoot() {
+        return new SingleRootFileSource(getWireMockRootDir());
+    }
+
+    @Before
+    @Override
+    public void setUpAndStartServer() {
+        client = getBuilder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setMaxConnections(NUM_STREAMS + 10)
+                .setStreamBufferSize(16)
+                .setAccept("application/json")
+                .setBaseUrl("http://localhost:" + port())
+                .build();
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotBlockOtherStreams() {
+        stubFor(get(urlPathEqualTo("/large")).willReturn(aResponse().withBodyFile(tmp.getName())));
+        stubFor(get(urlPathEqualTo("/small")).willReturn(aResponse().withBody("small response body")));
+
+        ClientRequest largeRequest = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/large").build();
+        ClientRequest smallRequest = client.requestBuilder().setMethod("GET").setUrlRelativetoBase("/small").build();
+
+        //the slow subscriber only requests a few elements, so its buffer fills up
+        TestSubscriber<ServerResponseElement> slow = client.executeObservably(largeRequest).test(0);
+        slow.request(10);
+        waitForValues(slow, 10);
+
+        //hundreds of concurrent streams must complete while the slow subscriber is stalled
+        TestSubscriber<Integer> fast = Flowable.range(0, NUM_STREAMS)
+                .flatMap(i -> client.executeObservably(smallRequest, bytes -> bytes.length), NUM_STREAMS)
+                .test();
+        fast.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        fast.assertNoErrors();
+        fast.assertComplete();
+        assertEquals(NUM_STREAMS * "small response body".length(), fast.values().stream().mapToInt(Integer::intValue).sum());
+        slow.assertNotComplete();
+
+        //then the slow subscriber consumes the remainder of the response
+        slow.request(Long.MAX_VALUE);
+        slow.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        slow.assertNoErrors();
+        slow.assertComplete();
+        long received = slow.values().stream()
+                .filter(el -> el instanceof ServerResponseBodyPart)
+                .mapToLong(el -> ((ServerResponseBodyPart) el).getBodyPartBytes().length)
+                .sum();
+        assertEquals(tmp.length(), received);
+    }
+
+    private void waitForValues(TestSubscriber<?> subscriber, int count) {
+        long deadline = System.currentTimeMillis() + getTimeOut();
+        while (subscriber.values().size() < count && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        assertEquals(count, subscriber.values().size());
+    }
+
+}
@@ -0,0 +1,128 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.DeflatingBodyGenerator;
+import be.wegenenverkeer.rxhttpclient.ServerResponse;
+import be.wegenenverkeer.rxhttpclient.rxjava.FlowableBodyGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.asynchttpclient.request.body.generator.BodyGenerator;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for streaming request bodies.
+ */
+public class RxHttpClientStreamingUploadTests extends UsingWireMockRxJava {
+
+    private static final String EXPECTED_BODY = "first,second,third";
+
+    @Test
+    public void testUploadFromByteArrays() {
+        Flowable<byte[]> body = Flowable.just("first,", "second,", "third")
+                .map(s -> s.getBytes(StandardCharsets.UTF_8));
+        assertUploaded(new FlowableBodyGenerator(body));
+    }
+
+    @Test
+    public void testUploadFromDirectByteBuffers() {
+        Flowable<ByteBuffer> body = Flowable.just("first,", "second,", "third")
+                .map(s -> {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+                });
+        assertUploaded(FlowableBodyGenerator.ofByteBuffers(body));
+    }
+
+    @Test
+    public void testUploadFromByteBufs() {
+        List<ByteBuf> buffers = new ArrayList<>();
+        Flowable<ByteBuf> body = Flowable.just("first,", "second,", "third")
+                .map(s -> Unpooled.copiedBuffer(s, StandardCharsets.UTF_8))
+                .doOnNext(buffers::add);
+        assertUploaded(FlowableBodyGenerator.ofByteBufs(body));
+        assertEquals(3, buffers.size());
+        assertTrue(buffers.stream().allMatch(b -> b.refCnt() == 0));
+    }
+
+    @Test
+    public void testUploadWithDeclaredContentLength() {
+        Flowable<byte[]> body = Flowable.just("first,", "second,", "third")
+                .map(s -> s.getBytes(StandardCharsets.UTF_8));
+        assertUploaded(new FlowableBodyGenerator(body).withContentLength(EXPECTED_BODY.length()));
+        verify(postRequestedFor(urlPathEqualTo("/upload"))
+                .withHeader("Content-Length", equalTo(Integer.toString(EXPECTED_BODY.length())))
+                .withHeader("Transfer-Encoding", absent()));
+    }
+
+    @Test
+    public void testUploadWithWrongContentLengthFails() {
+        stubFor(post(urlPathEqualTo("/upload"))
+                .willReturn(aResponse().withStatus(201)));
+
+        Flowable<ByteBuffer> body = Flowable.just("first,", "second,", "third")
+                .map(s -> ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+        ClientRequest request = client.requestBuilder()
+                .setMethod("POST")
+                .setUrlRelativetoBase("/upload")
+                .setBody(FlowableBodyGenerator.ofByteBuffers(body, EXPECTED_BODY.length() + 10))
+                .build();
+
+        TestSubscriber<Integer> sub = client.executeToCompletion(request, ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(Throwable.class);
+    }
+
+    @Test
+    public void testCompressedUpload() {
+        stubFor(post(urlPathEqualTo("/upload"))
+                .willReturn(aResponse().withStatus(201)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("POST")
+                .setUrlRelativetoBase("/upload")
+                .setBody(EXPECTED_BODY)
+                .setBodyCompression(DeflatingBodyGenerator.Encoding.GZIP)
+                .build();
+
+        TestSubscriber<Integer> sub = client.executeToCompletion(request, ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201);
+        verify(postRequestedFor(urlPathEqualTo("/upload"))
+                .withHeader("Content-Encoding", equalTo("gzip"))
+                .withHeader("Content-Length", absent()));
+    }
+
+    private void assertUploaded(BodyGenerator bodyGenerator) {
+        stubFor(post(urlPathEqualTo("/upload"))
+                .withRequestBody(equalTo(EXPECTED_BODY))
+                .willReturn(aResponse().withStatus(201)));
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("POST")
+                .setUrlRelativetoBase("/upload")
+                .setBody(bodyGenerator)
+                .build();
+
+        TestSubscriber<Integer> sub = client.executeToCompletion(request, ServerResponse::getStatusCode).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        sub.assertValues(201);
+    }
+}
@@ -104,6 +104,31 @@ public class RxHttpClientTestChunkedResponse extends UsingWireMockRxJava {
         subscriber.assertValueCount(SIZE);
     }
 
+    @Test
+    public void testChunkedTransferWithLiteralDechunk() throws InterruptedException {
+        stubFor(
+                get(urlPathEqualTo("/sse"))
+                        .willReturn(aResponse()
+                                .withBodyFile(getNameOfGeneratedFile())
+                                .withChunkedDribbleDelay(300_000, 2000)
+                        )
+        );
+
+        ClientRequest request = client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/sse")
+                .build();
+
+        Flowable<String> flowable = client.executeAndDechunkLiteral(request, "\n");
+
+        TestSubscriber<String> subscriber = flowable.test();
+        subscriber.awaitDone(20_000, TimeUnit.MILLISECONDS);
+
+        subscriber.assertComplete();
+        subscriber.assertNoErrors();
+        subscriber.assertValueCount(SIZE);
+    }
+
 
     @Test
     public void testCancellation() throws InterruptedException {
@@ -0,0 +1,119 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.rxjava.RxJavaHttpClient;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the threads on which response transformers run.
+ */
+public class RxHttpClientTransformerExecutorTests extends UsingWireMockRxJava {
+
+    private static final String IO_THREAD_PREFIX = "test-io-";
+
+    private ExecutorService transformers;
+
+    @Before
+    @Override
+    public void setUpAndStartServer() {
+        transformers = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-transformer"));
+        client = clientBuilder().build();
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200).withBody("[]")));
+    }
+
+    @After
+    public void stopTransformers() {
+        transformers.shutdownNow();
+    }
+
+    @Test
+    public void testTransformerDoesNotRunOnIoThread() throws Exception {
+        String thread = client.execute(request(client), response -> Thread.currentThread().getName())
+                .get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+        assertFalse(thread.startsWith(IO_THREAD_PREFIX));
+    }
+
+    @Test
+    public void testDefaultPoolIsOwnedByTheClient() throws Exception {
+        try (RxJavaHttpClient owning = clientBuilder().setTransformerThreads(2).build()) {
+            Thread thread = owning.execute(request(owning), response -> Thread.currentThread())
+                    .get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+            assertTrue(thread.getName().startsWith("rxhttpclient-transformer-"));
+            assertTrue(thread.isDaemon());
+        }
+    }
+
+    @Test
+    public void testPerCallExecutor() throws Exception {
+        String thread = client.execute(request(client), response -> Thread.currentThread().getName(), transformers)
+                .get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+        assertEquals("test-transformer", thread);
+    }
+
+    @Test
+    public void testPerCallScheduler() {
+        TestSubscriber<String> sub = client
+                .executeToCompletion(request(client), response -> Thread.currentThread().getName(), Schedulers.from(transformers))
+                .test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertValues("test-transformer");
+    }
+
+    @Test
+    public void testConfiguredExecutor() {
+        try (RxJavaHttpClient configured = clientBuilder().setTransformerExecutor(transformers).build()) {
+            TestSubscriber<String> sub = configured
+                    .executeToCompletion(request(configured), response -> Thread.currentThread().getName())
+                    .test();
+
+            sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+            sub.assertValues("test-transformer");
+        }
+    }
+
+    @Test
+    public void testDirectExecutorRunsOnIoThread() {
+        try (RxJavaHttpClient direct = clientBuilder().setTransformerExecutor(Runnable::run).build()) {
+            TestSubscriber<String> sub = direct
+                    .executeToCompletion(request(direct), response -> Thread.currentThread().getName())
+                    .test();
+
+            sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+            sub.assertValueCount(1);
+            assertTrue(sub.values().get(0).startsWith(IO_THREAD_PREFIX));
+        }
+    }
+
+    private RxJavaHttpClient.Builder clientBuilder() {
+        return new RxJavaHttpClient.Builder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setThreadFactory(r -> new Thread(r, IO_THREAD_PREFIX + r.hashCode()))
+                .setBaseUrl("http://localhost:" + port());
+    }
+
+    private static ClientRequest request(RxJavaHttpClient client) {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/contacts")
+                .build();
+    }
+}
@@ -0,0 +1,132 @@
+package be.wegenenverkeer.designtests;
+
+import be.wegenenverkeer.UsingWireMockRxJava;
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.HttpClientError;
+import be.wegenenverkeer.rxhttpclient.ResponseAggregation;
+import be.wegenenverkeer.rxhttpclient.rxjava.RxJavaHttpClient;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.reactivex.rxjava3.subscribers.TestSubscriber;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the execute methods that read the response body as a typed JSON value.
+ */
+public class RxHttpClientTypedJsonTests extends UsingWireMockRxJava {
+
+    private static final String CONTACTS = "[{\"id\": 1, \"name\": \"één\", \"balance\": 1.10}, {\"id\": 2, \"name\": \"twee\", \"balance\": 2}]";
+
+    @Test
+    public void testExecuteForClass() throws Exception {
+        stubContacts();
+
+        JsonNode contacts = client.execute(request(), JsonNode.class).get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+        assertEquals(2, contacts.size());
+        assertEquals("één", contacts.get(0).get("name").asText());
+    }
+
+    @Test
+    public void testExecuteToCompletionForGenericType() {
+        stubContacts();
+
+        TestSubscriber<List<Map<String, Object>>> sub = client
+                .executeToCompletion(request(), client.getJsonResponseReader()
+                        .forType(new TypeReference<List<Map<String, Object>>>() {}))
+                .test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertNoErrors();
+        assertEquals("twee", sub.values().get(0).get(1).get("name"));
+    }
+
+    @Test
+    public void testExecuteWithDeclaredCharset() throws Exception {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json; charset=ISO-8859-1")
+                        .withBody(CONTACTS.getBytes(StandardCharsets.ISO_8859_1))));
+
+        JsonNode contacts = client.execute(request(), JsonNode.class).get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+        assertEquals("één", contacts.get(0).get("name").asText());
+    }
+
+    @Test
+    public void testExecuteToCompletionWithErrorStatus() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(404).withBody("{\"error\": \"not found\"}")));
+
+        TestSubscriber<JsonNode> sub = client.executeToCompletion(request(), JsonNode.class).test();
+
+        sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+        sub.assertError(HttpClientError.class);
+    }
+
+    @Test
+    public void testConfiguredObjectMapperWithDirectAggregation() throws Exception {
+        stubContacts();
+        try (RxJavaHttpClient directClient = new RxJavaHttpClient.Builder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setResponseAggregation(ResponseAggregation.DIRECT)
+                .setObjectMapper(new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+                .setBaseUrl("http://localhost:" + port())
+                .build()) {
+
+            List<Map<String, Object>> contacts = directClient
+                    .execute(request(directClient), directClient.getJsonResponseReader()
+                            .forType(new TypeReference<List<Map<String, Object>>>() {}))
+                    .get(getTimeOut(), TimeUnit.MILLISECONDS);
+
+            assertEquals(new BigDecimal("1.10"), contacts.get(0).get("balance"));
+        }
+    }
+
+    @Test
+    public void testJsonStreamUsesConfiguredObjectMapper() {
+        stubContacts();
+        try (RxJavaHttpClient mapperClient = new RxJavaHttpClient.Builder()
+                .setRequestTimeout(getRequestTimeOut())
+                .setObjectMapper(new ObjectMapper().enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+                .setBaseUrl("http://localhost:" + port())
+                .build()) {
+
+            TestSubscriber<Map> sub = mapperClient.executeJsonStream(request(mapperClient), Map.class).test();
+
+            sub.awaitDone(getTimeOut(), TimeUnit.MILLISECONDS);
+            sub.assertNoErrors();
+            sub.assertValueCount(2);
+            assertEquals(new BigDecimal("1.10"), sub.values().get(0).get("balance"));
+        }
+    }
+
+    private void stubContacts() {
+        stubFor(get(urlPathEqualTo("/contacts"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(CONTACTS)));
+    }
+
+    private ClientRequest request() {
+        return request(client);
+    }
+
+    private static ClientRequest request(RxJavaHttpClient client) {
+        return client.requestBuilder()
+                .setMethod("GET")
+                .setUrlRelativetoBase("/contacts")
+                .build();
+    }
+}
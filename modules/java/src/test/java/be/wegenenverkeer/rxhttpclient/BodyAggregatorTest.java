@@ -0,0 +1,110 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BodyAggregatorTest {
+
+    private final byte[] content = "{\"id\": 1, \"name\": \"Lorem ipsum\"}, "
+            .repeat(1000)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPresizedHeapBufferIsNotCopied() throws IOException {
+        BodyAggregator aggregator = new BodyAggregator(-1, -1, null, false);
+        aggregator.expect(content.length);
+        AggregatedBody body = appendInParts(aggregator, 1000).finish();
+
+        byte[] bytes = body.getBytes();
+        assertArrayEquals(content, bytes);
+        assertSame("the buffer is handed over as is", bytes, body.getBytes());
+    }
+
+    @Test
+    public void testGrowingBufferWithoutContentLength() throws IOException {
+        AggregatedBody body = appendInParts(new BodyAggregator(-1, -1, null, false), 777).finish();
+
+        assertEquals(content.length, body.length());
+        assertArrayEquals(content, body.getBytes());
+        assertEquals(new String(content, StandardCharsets.UTF_8), body.getString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWrongContentLengthFallsBackToGrowth() throws IOException {
+        BodyAggregator aggregator = new BodyAggregator(-1, -1, null, false);
+        aggregator.expect(100);
+        assertArrayEquals(content, appendInParts(aggregator, 1000).finish().getBytes());
+    }
+
+    @Test
+    public void testDirectBuffer() throws IOException {
+        BodyAggregator aggregator = new BodyAggregator(-1, -1, null, true);
+        aggregator.expect(content.length);
+        AggregatedBody body = appendInParts(aggregator, 1000).finish();
+
+        assertTrue(body.getByteBuffer().isDirect());
+        assertArrayEquals(content, body.getBytes());
+        assertEquals(new String(content, StandardCharsets.UTF_8), body.getString(StandardCharsets.UTF_8));
+        try (InputStream in = body.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testAnnouncedLargeBodyIsSpilledFromTheStart() throws IOException {
+        BodyAggregator aggregator = new BodyAggregator(1024, -1, folder.getRoot().toPath(), false);
+        aggregator.expect(content.length);
+        aggregator.append(ByteBuffer.wrap(content, 0, 10));
+        assertEquals("spill file is created with the first body part", 1, folder.getRoot().listFiles().length);
+
+        aggregator.append(ByteBuffer.wrap(content, 10, content.length - 10));
+        AggregatedBody body = aggregator.finish();
+        try (InputStream in = body.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testSpilledBodyIsReadUntilClosed() throws IOException {
+        AggregatedBody body = appendInParts(new BodyAggregator(1024, -1, folder.getRoot().toPath(), false), 1000).finish();
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals("the file is opened again for each read", content, body.getBytes());
+        }
+        try (InputStream in = body.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        assertEquals(1, folder.getRoot().listFiles().length);
+
+        body.close();
+        assertEquals("the file is deleted on close", 0, folder.getRoot().listFiles().length);
+        body.close();
+    }
+
+    @Test(expected = ResponseTooLargeException.class)
+    public void testAnnouncedTooLargeBody() {
+        new BodyAggregator(-1, 1024, null, false).expect(1025);
+    }
+
+    private BodyAggregator appendInParts(BodyAggregator aggregator, int partSize) throws IOException {
+        for (int i = 0; i < content.length; i += partSize) {
+            aggregator.append(ByteBuffer.wrap(Arrays.copyOfRange(content, i, Math.min(content.length, i + partSize))));
+        }
+        return aggregator;
+    }
+}
@@ -0,0 +1,46 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CancellationPolicyTest {
+
+    private final CancellationPolicy policy = CancellationPolicy.drainBelow(64 * 1024, 100, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void testDrainWhenFewBytesRemain() {
+        assertTrue(policy.shouldDrain(1000, -1));
+        assertTrue(policy.shouldDrain(64 * 1024, 5000));
+    }
+
+    @Test
+    public void testDrainWhenRemainderIsExpectedSoon() {
+        assertTrue(policy.shouldDrain(10 * 1024 * 1024, 50));
+    }
+
+    @Test
+    public void testCloseWhenMuchRemains() {
+        assertFalse(policy.shouldDrain(10 * 1024 * 1024, 5000));
+        assertFalse(policy.shouldDrain(10 * 1024 * 1024, -1));
+    }
+
+    @Test
+    public void testCloseWhenRemainderIsUnknown() {
+        assertFalse(policy.shouldDrain(-1, -1));
+        assertTrue(CancellationPolicy.DRAIN.shouldDrain(-1, -1));
+    }
+
+    @Test
+    public void testAbort() {
+        assertFalse(CancellationPolicy.ABORT.shouldDrain(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreshold() {
+        CancellationPolicy.drainBelow(-1, 100, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,177 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import be.wegenenverkeer.rxhttpclient.rxjava.FlowableBodyGenerator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.ByteArrayBodyGenerator;
+import org.asynchttpclient.request.body.generator.FeedListener;
+import org.asynchttpclient.request.body.generator.FileBodyGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.asynchttpclient.request.body.Body.BodyState.STOP;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeflatingBodyGeneratorTest {
+
+    private final byte[] content = "Lorem ipsum dolor sit amet, consectetur adipiscing elit. "
+            .repeat(2000)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testGzipRoundTrip() throws IOException {
+        DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                new ByteArrayBodyGenerator(content), DeflatingBodyGenerator.Encoding.GZIP);
+        byte[] compressed = drain(generator.createBody(), 1024);
+        assertTrue("body is compressed", compressed.length < content.length / 10);
+        assertArrayEquals(content, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws IOException {
+        DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                new ByteArrayBodyGenerator(content), DeflatingBodyGenerator.Encoding.DEFLATE, 9);
+        byte[] compressed = drain(generator.createBody(), 1024);
+        assertArrayEquals(content, readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testEmptyBody() throws IOException {
+        DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                new ByteArrayBodyGenerator(new byte[0]), DeflatingBodyGenerator.Encoding.GZIP);
+        byte[] compressed = drain(generator.createBody(), 16);
+        assertEquals(0, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))).length);
+    }
+
+    @Test
+    public void testStreamedBodyIsCompressedIncrementally() throws IOException {
+        PublishProcessor<byte[]> processor = PublishProcessor.create();
+        DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                new FlowableBodyGenerator(processor), DeflatingBodyGenerator.Encoding.GZIP);
+        Body body = generator.createBody();
+        ByteBuf chunk = Unpooled.buffer(8 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //only the gzip header is available before the source has produced data
+        assertEquals(Body.BodyState.CONTINUE, body.transferTo(chunk));
+        assertEquals(10, chunk.readableBytes());
+        out.write(chunk.array(), chunk.arrayOffset(), chunk.readableBytes());
+        chunk.clear();
+        assertEquals(Body.BodyState.SUSPEND, body.transferTo(chunk));
+
+        processor.onNext(content);
+        processor.onComplete();
+        Body.BodyState state;
+        while ((state = body.transferTo(chunk)) != STOP) {
+            assertEquals(Body.BodyState.CONTINUE, state);
+            out.write(chunk.array(), chunk.arrayOffset(), chunk.readableBytes());
+            chunk.clear();
+        }
+        body.close();
+        assertArrayEquals(content, readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    @Test
+    public void testCompressedBytesAreFlushedWhenSourceSuspends() throws Exception {
+        PublishProcessor<byte[]> processor = PublishProcessor.create();
+        DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                new FlowableBodyGenerator(processor), DeflatingBodyGenerator.Encoding.GZIP);
+        SuspendableBody body = generator.createBody();
+        AtomicInteger resumed = new AtomicInteger();
+        body.setListener(new FeedListener() {
+            @Override
+            public void onContentAdded() {
+                resumed.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        ByteBuf chunk = Unpooled.buffer(8 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        processor.onNext(content);
+        assertEquals(1, resumed.get());
+        Body.BodyState state;
+        while ((state = body.transferTo(chunk)) != Body.BodyState.SUSPEND) {
+            assertEquals(Body.BodyState.CONTINUE, state);
+            out.write(chunk.array(), chunk.arrayOffset(), chunk.readableBytes());
+            chunk.clear();
+        }
+
+        //everything that was received can be decompressed before the source completes
+        byte[] sent = out.toByteArray();
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(sent, 10, sent.length - 10);
+        byte[] inflated = new byte[content.length];
+        assertEquals(content.length, inflater.inflate(inflated));
+        assertArrayEquals(content, inflated);
+        inflater.end();
+
+        processor.onComplete();
+        body.close();
+    }
+
+    @Test
+    public void testDeflatersAreReused() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                    new FlowableBodyGenerator(Flowable.just(content)), DeflatingBodyGenerator.Encoding.GZIP, i % 10);
+            byte[] compressed = drain(generator.createBody(), 4096);
+            assertArrayEquals(content, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        }
+    }
+
+    @Test
+    public void testFileBodyIsCompressed() throws IOException {
+        File file = File.createTempFile("deflating", ".txt");
+        try {
+            Files.write(file.toPath(), content);
+            DeflatingBodyGenerator generator = new DeflatingBodyGenerator(
+                    new FileBodyGenerator(file), DeflatingBodyGenerator.Encoding.GZIP);
+            byte[] compressed = drain(generator.createBody(), 1024);
+            assertArrayEquals(content, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new DeflatingBodyGenerator(new ByteArrayBodyGenerator(content), DeflatingBodyGenerator.Encoding.GZIP, 10);
+    }
+
+    private static byte[] drain(Body body, int chunkSize) throws IOException {
+        ByteBuf chunk = Unpooled.buffer(chunkSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (body.transferTo(chunk) != STOP) {
+            out.write(chunk.array(), chunk.arrayOffset(), chunk.readableBytes());
+            chunk.clear();
+        }
+        body.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            return is.readAllBytes();
+        }
+    }
+}
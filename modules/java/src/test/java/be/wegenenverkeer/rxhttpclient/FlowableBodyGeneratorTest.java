@@ -5,17 +5,21 @@ import be.wegenenverkeer.rxhttpclient.rxjava.FlowableBodyGenerator;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.PublishProcessor;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 import org.asynchttpclient.request.body.Body;
+import org.asynchttpclient.request.body.generator.FeedListener;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.asynchttpclient.request.body.Body.BodyState.STOP;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class FlowableBodyGeneratorTest {
 
@@ -28,6 +32,19 @@ public class FlowableBodyGeneratorTest {
         return srcArray;
     }
 
+    private static FeedListener countingListener(AtomicInteger count) {
+        return new FeedListener() {
+            @Override
+            public void onContentAdded() {
+                count.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+    }
+
     @Test
     public void testSingleRead() throws IOException {
         final int srcArraySize = chunkSize - 1;
@@ -143,4 +160,121 @@ public class FlowableBodyGeneratorTest {
 
     }
 
+    @Test
+    public void testRequestsAreBoundedByByteBudget() throws IOException {
+        final AtomicLong requested = new AtomicLong();
+        Flowable<byte[]> observable = Flowable.range(0, 100)
+                .map(i -> sourceArray(1024))
+                .doOnRequest(requested::addAndGet);
+
+        FlowableBodyGenerator bodyGenerator = new FlowableBodyGenerator(observable).withMaxBufferedBytes(4 * 1024L);
+        Body body = bodyGenerator.createBody();
+        //the first item is requested on its own, to learn the item size
+        assertEquals(4, requested.get());
+
+        final ByteBuf chunkBuffer = Unpooled.buffer(2048);
+        int bytesRead = 0;
+        while (body.transferTo(chunkBuffer) != STOP) {
+            bytesRead += chunkBuffer.writerIndex();
+            chunkBuffer.clear();
+            assertTrue(requested.get() * 1024 - bytesRead <= 4 * 1024);
+        }
+        assertEquals("bytes read", 100 * 1024, bytesRead);
+    }
+
+    @Test
+    public void testBodyWriterIsResumedWhenDataArrives() throws IOException, InterruptedException {
+        PublishProcessor<byte[]> processor = PublishProcessor.create();
+        FlowableBodyGenerator bodyGenerator = new FlowableBodyGenerator(processor);
+        final AtomicInteger resumed = new AtomicInteger();
+
+        SuspendableBody body = bodyGenerator.createBody();
+        body.setListener(countingListener(resumed));
+        final ByteBuf chunkBuffer = Unpooled.buffer(chunkSize);
+        assertEquals(Body.BodyState.SUSPEND, body.transferTo(chunkBuffer));
+
+        processor.onNext(sourceArray(100));
+        assertEquals(1, resumed.get());
+        assertEquals(Body.BodyState.CONTINUE, body.transferTo(chunkBuffer));
+        assertEquals(100, chunkBuffer.writerIndex());
+
+        processor.onComplete();
+        assertEquals(2, resumed.get());
+        assertEquals(Body.BodyState.STOP, body.transferTo(chunkBuffer));
+    }
+
+    @Test
+    public void testEachBodyIsResumedByItsOwnListener() throws IOException {
+        PublishProcessor<byte[]> processor = PublishProcessor.create();
+        ResumingBodyGenerator bodyGenerator = new ResumingBodyGenerator(new FlowableBodyGenerator(processor));
+        final AtomicInteger firstResumed = new AtomicInteger();
+        final AtomicInteger secondResumed = new AtomicInteger();
+
+        Body first = bodyGenerator.createBody();
+        Body second = bodyGenerator.createBody();
+        bodyGenerator.setListener(countingListener(firstResumed));
+        bodyGenerator.setListener(countingListener(secondResumed));
+
+        processor.onNext(sourceArray(100));
+        assertEquals(1, firstResumed.get());
+        assertEquals(1, secondResumed.get());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testClosedBodyDoesNotTakeTheListener() throws IOException {
+        PublishProcessor<byte[]> processor = PublishProcessor.create();
+        ResumingBodyGenerator bodyGenerator = new ResumingBodyGenerator(new FlowableBodyGenerator(processor));
+        final AtomicInteger resumed = new AtomicInteger();
+
+        bodyGenerator.createBody().close();
+        Body body = bodyGenerator.createBody();
+        bodyGenerator.setListener(countingListener(resumed));
+
+        processor.onNext(sourceArray(100));
+        assertEquals(1, resumed.get());
+
+        body.close();
+    }
+
+    @Test
+    public void testDeclaredContentLength() throws IOException {
+        Flowable<byte[]> observable = Flowable.just(sourceArray(100), sourceArray(50));
+        Body body = new FlowableBodyGenerator(observable).withContentLength(150).createBody();
+        assertEquals(150, body.getContentLength());
+
+        final ByteBuf chunkBuffer = Unpooled.buffer(chunkSize);
+        assertEquals(Body.BodyState.CONTINUE, body.transferTo(chunkBuffer));
+        assertEquals(150, chunkBuffer.writerIndex());
+        assertEquals(Body.BodyState.STOP, body.transferTo(chunkBuffer));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMoreBytesThanDeclaredContentLengthFails() throws IOException {
+        final AtomicInteger emitted = new AtomicInteger();
+        Flowable<byte[]> observable = Flowable.range(0, 100)
+                .map(i -> sourceArray(100))
+                .doOnNext(b -> emitted.incrementAndGet());
+        Body body = new FlowableBodyGenerator(observable).withContentLength(150).createBody();
+        //the producer is cancelled as soon as the declared length is exceeded
+        assertEquals(2, emitted.get());
+        body.transferTo(Unpooled.buffer(chunkSize));
+    }
+
+    @Test(expected = IOException.class)
+    public void testFewerBytesThanDeclaredContentLengthFails() throws IOException {
+        Flowable<byte[]> observable = Flowable.just(sourceArray(100));
+        Body body = new FlowableBodyGenerator(observable).withContentLength(150).createBody();
+        body.transferTo(Unpooled.buffer(chunkSize));
+    }
+
+    @Test(expected = IOException.class)
+    public void testErrorIsRethrownByBodyWriter() throws IOException {
+        FlowableBodyGenerator bodyGenerator = new FlowableBodyGenerator(Flowable.error(new RuntimeException("fail")));
+        Body body = bodyGenerator.createBody();
+        body.transferTo(Unpooled.buffer(chunkSize));
+    }
+
 }
@@ -0,0 +1,30 @@
+package be.wegenenverkeer.rxhttpclient;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseCancellationTest {
+
+    private final CancellationStats stats = new CancellationStats();
+
+    @Test
+    public void testAbortByHandlerIsCountedOnce() {
+        ResponseCancellation cancellation = new ResponseCancellation(stats);
+
+        assertTrue(cancellation.abortByHandler());
+        assertFalse(cancellation.abortByHandler());
+        assertEquals(1, stats.getAborted());
+    }
+
+    @Test
+    public void testCompletedResponseIsNotAborted() {
+        ResponseCancellation cancellation = new ResponseCancellation(stats);
+        cancellation.onCompleted();
+
+        assertFalse(cancellation.abortByHandler());
+        assertEquals(0, stats.getAborted());
+    }
+}
@@ -0,0 +1,44 @@
+package be.wegenenverkeer.rxhttpclient.aws;
+
+import be.wegenenverkeer.rxhttpclient.ClientRequest;
+import be.wegenenverkeer.rxhttpclient.RxHttpClient;
+import be.wegenenverkeer.rxhttpclient.rxjava.RxJavaHttpClient;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class TestPayloadHash {
+
+    private static final String DECLARED_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    private RxHttpClient client = new RxJavaHttpClient
+            .Builder()
+            .setBaseUrl("http://foo.com")
+            .setMaxConnections(1)
+            .build();
+
+    private AwsSignature4Signer signer = new AwsSignature4Signer(
+            AwsServiceEndPoint.defaultFor(AwsService.S3),
+            new ConstantAwsCredentialProvider("key", "secret"));
+
+    @Test
+    public void testDeclaredPayloadHashIsSigned() {
+        ClientRequest request = client.requestBuilder()
+                .setMethod("PUT")
+                .setUrlRelativetoBase("/bucket/key")
+                .setBody(new byte[]{1, 2, 3})
+                .addHeader(AwsSignature4Signer.CONTENT_SHA256_HEADER, DECLARED_HASH)
+                .build();
+        assertTrue(signer.canonicalRequest(request).endsWith("\n" + DECLARED_HASH));
+    }
+
+    @Test
+    public void testStringBodyIsHashedWithoutDeclaredPayloadHash() {
+        ClientRequest request = client.requestBuilder()
+                .setMethod("PUT")
+                .setUrlRelativetoBase("/bucket/key")
+                .setBody("test")
+                .build();
+        assertTrue(signer.canonicalRequest(request).endsWith("\n" + DECLARED_HASH));
+    }
+}